@@ -2,10 +2,12 @@ package org.lei.bill_buddy.DTO;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 @Data
 public class ExchangeRateResponse {
+    private String result;
     private String baseCode;
-    private Map<String, Double> conversionRates;
+    private Map<String, BigDecimal> conversionRates;
 }
@@ -0,0 +1,11 @@
+package org.lei.bill_buddy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ExpenseImportResultDTO {
+    private Long groupId;
+    private int imported;
+}
@@ -0,0 +1,19 @@
+package org.lei.bill_buddy.DTO;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class ExpenseImportRowDTO {
+    private String title;
+    private String type;
+    private String description;
+    private BigDecimal amount;
+    private String currency;
+    private Long payerId;
+    private String expenseDate;
+    private List<Long> participants;
+    private List<BigDecimal> shares;
+}
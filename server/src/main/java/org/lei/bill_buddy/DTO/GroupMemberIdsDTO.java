@@ -0,0 +1,6 @@
+package org.lei.bill_buddy.DTO;
+
+import java.util.Set;
+
+public record GroupMemberIdsDTO(Long groupId, Set<Long> memberIds) {
+}
@@ -0,0 +1,40 @@
+package org.lei.bill_buddy.DTO;
+
+import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.enums.GroupType;
+import org.lei.bill_buddy.model.Group;
+import org.lei.bill_buddy.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cached copy of a group row. The creator is kept as an id only and comes back as a reference stub.
+ */
+public record GroupSnapshotDTO(Long id,
+                               String name,
+                               Long creatorId,
+                               GroupType type,
+                               Currency defaultCurrency,
+                               LocalDateTime createdAt,
+                               LocalDateTime updatedAt) {
+
+    public static GroupSnapshotDTO from(Group group) {
+        return new GroupSnapshotDTO(group.getId(), group.getName(), group.getCreator().getId(), group.getType(),
+                group.getDefaultCurrency(), group.getCreatedAt(), group.getUpdatedAt());
+    }
+
+    public Group toEntity() {
+        User creator = new User();
+        creator.setId(creatorId);
+        Group group = new Group();
+        group.setId(id);
+        group.setName(name);
+        group.setCreator(creator);
+        group.setType(type);
+        group.setDefaultCurrency(defaultCurrency);
+        group.setDeleted(false);
+        group.setCreatedAt(createdAt);
+        group.setUpdatedAt(updatedAt);
+        return group;
+    }
+}
@@ -0,0 +1,14 @@
+package org.lei.bill_buddy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class SettlementTransferDTO {
+    private UserDTO from;
+    private UserDTO to;
+    private BigDecimal amount;
+}
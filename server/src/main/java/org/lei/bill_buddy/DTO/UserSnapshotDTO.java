@@ -0,0 +1,35 @@
+package org.lei.bill_buddy.DTO;
+
+import org.lei.bill_buddy.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cached copy of a user row. The password hash is deliberately left out.
+ */
+public record UserSnapshotDTO(Long id,
+                              String avatar,
+                              String email,
+                              String givenName,
+                              String familyName,
+                              LocalDateTime createdAt,
+                              LocalDateTime updatedAt) {
+
+    public static UserSnapshotDTO from(User user) {
+        return new UserSnapshotDTO(user.getId(), user.getAvatar(), user.getEmail(), user.getGivenName(),
+                user.getFamilyName(), user.getCreatedAt(), user.getUpdatedAt());
+    }
+
+    public User toEntity() {
+        User user = new User();
+        user.setId(id);
+        user.setAvatar(avatar);
+        user.setEmail(email);
+        user.setGivenName(givenName);
+        user.setFamilyName(familyName);
+        user.setDeleted(false);
+        user.setCreatedAt(createdAt);
+        user.setUpdatedAt(updatedAt);
+        return user;
+    }
+}
@@ -1,5 +1,7 @@
 package org.lei.bill_buddy.aspect;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -7,21 +9,23 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.lei.bill_buddy.annotation.RateLimit;
 import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.config.web.UserPrincipal;
 import org.lei.bill_buddy.enums.ErrorCode;
+import org.lei.bill_buddy.util.TokenBucketRateLimiter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.lang.reflect.Method;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Aspect
 @Component
 @RequiredArgsConstructor
 public class RateLimitAspect {
 
-    private final Map<String, Deque<Long>> requestHistory = new ConcurrentHashMap<>();
+    private final TokenBucketRateLimiter rateLimiter;
 
     @Around("execution(* org.lei.bill_buddy.controller..*(..))")
     public Object rateLimit(ProceedingJoinPoint joinPoint) throws Throwable {
@@ -37,25 +41,36 @@ public class RateLimitAspect {
         }
 
         RateLimit config = methodAnnotation != null ? methodAnnotation : classAnnotation;
-        int maxRequests = config.maxRequests();
-        int timeWindowSeconds = config.timeWindowSeconds();
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = attributes != null ? attributes.getRequest() : null;
+        HttpServletResponse response = attributes != null ? attributes.getResponse() : null;
 
-        String key = declaringClass.getName() + "#" + method.getName();
+        String key = declaringClass.getName() + "#" + method.getName() + ":" + principalKey(request);
+        TokenBucketRateLimiter.Decision decision = rateLimiter.tryConsume(key, config.maxRequests(), config.timeWindowSeconds());
 
-        long now = System.currentTimeMillis();
-        Deque<Long> timestamps = requestHistory.computeIfAbsent(key, k -> new ArrayDeque<>());
-
-        synchronized (timestamps) {
-            while (!timestamps.isEmpty() && now - timestamps.peekFirst() > timeWindowSeconds * 1000L) {
-                timestamps.pollFirst();
-            }
-            if (timestamps.size() >= maxRequests) {
-                throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        if (response != null) {
+            response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+            response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+            response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+            if (!decision.allowed()) {
+                response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
             }
-            timestamps.addLast(now);
+        }
+        if (!decision.allowed()) {
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
         }
 
         return joinPoint.proceed();
     }
-}
 
+    private String principalKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return "user:" + principal.getId();
+        }
+        if (request == null) return "anonymous";
+        // X-Forwarded-For is resolved by the container against server.tomcat.remoteip.internal-proxies,
+        // so a client cannot pick its own address by sending the header.
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,79 @@
+package org.lei.bill_buddy.config.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.GroupMemberIdsDTO;
+import org.lei.bill_buddy.DTO.GroupSnapshotDTO;
+import org.lei.bill_buddy.DTO.UserSnapshotDTO;
+import org.lei.bill_buddy.config.web.AuthPrincipalCache;
+import org.lei.bill_buddy.util.EntityGenerations;
+import org.lei.bill_buddy.util.TwoLevelCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class CacheConfig {
+
+    @Value("${cache.local.max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${cache.local.ttl-seconds:300}")
+    private long localTtlSeconds;
+
+    @Value("${cache.remote.ttl-seconds:1800}")
+    private long remoteTtlSeconds;
+
+    @Bean
+    public TwoLevelCache<GroupSnapshotDTO> groupCache(StringRedisTemplate redis, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return build("group", GroupSnapshotDTO.class, redis, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public TwoLevelCache<GroupMemberIdsDTO> groupMembersCache(StringRedisTemplate redis, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return build("group-members", GroupMemberIdsDTO.class, redis, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public TwoLevelCache<UserSnapshotDTO> userCache(StringRedisTemplate redis, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return build("user", UserSnapshotDTO.class, redis, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory, List<TwoLevelCache<?>> caches,
+                                                                 EntityGenerations entityGenerations,
+                                                                 AuthPrincipalCache principalCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.lastIndexOf(':');
+            if (separator < 0) return;
+            String cacheName = body.substring(0, separator);
+            String key = body.substring(separator + 1);
+            entityGenerations.onInvalidation(cacheName, key);
+            for (TwoLevelCache<?> cache : caches) {
+                if (cache.getName().equals(cacheName)) cache.evictLocal(key);
+            }
+            if (EntityGenerations.USER.equals(cacheName)) principalCache.evictUser(Long.valueOf(key));
+            log.debug("Received cache invalidation for {}:{}", cacheName, key);
+        }, new ChannelTopic(TwoLevelCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    private <V> TwoLevelCache<V> build(String name, Class<V> type, StringRedisTemplate redis,
+                                       ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new TwoLevelCache<>(name, type, localMaxSize, Duration.ofSeconds(localTtlSeconds),
+                Duration.ofSeconds(remoteTtlSeconds), redis, objectMapper, meterRegistry);
+    }
+}
@@ -5,15 +5,24 @@ import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFacto
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
     public static final String EMAIL_QUEUE_NAME = "email.queue";
     public static final String EMAIL_EXCHANGE_NAME = "email.exchange";
     public static final String EMAIL_ROUTING_KEY = "email.routing.key";
+    public static final String EMAIL_BATCH_CONTAINER_FACTORY = "emailBatchListenerContainerFactory";
+    public static final String EMAIL_RETRY_EXCHANGE_NAME = "email.retry.exchange";
+    public static final String EMAIL_RETRY_QUEUE_PREFIX = "email.retry.";
+    public static final String EMAIL_PARKING_LOT_QUEUE_NAME = "email.parking-lot";
+    public static final String EMAIL_ATTEMPT_HEADER = "x-email-attempt";
 
     @Bean
     public Queue emailQueue() {
@@ -33,6 +42,43 @@ public class RabbitMQConfig {
                 .with(EMAIL_ROUTING_KEY);
     }
 
+    @Bean
+    public DirectExchange emailRetryExchange() {
+        return new DirectExchange(EMAIL_RETRY_EXCHANGE_NAME);
+    }
+
+    /**
+     * One delay queue per retry attempt. Messages wait out the queue TTL and are then dead-lettered
+     * back to the email exchange, giving an exponential backoff without a scheduler.
+     */
+    @Bean
+    public Declarables emailRetryQueues(@Value("${email.retry.delays-ms:10000,60000,300000}") List<Long> delaysMs) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int attempt = 1; attempt <= delaysMs.size(); attempt++) {
+            Queue queue = QueueBuilder.durable(EMAIL_RETRY_QUEUE_PREFIX + attempt)
+                    .ttl(delaysMs.get(attempt - 1).intValue())
+                    .deadLetterExchange(EMAIL_EXCHANGE_NAME)
+                    .deadLetterRoutingKey(EMAIL_ROUTING_KEY)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(emailRetryExchange()).with(queue.getName()));
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean
+    public Queue emailParkingLotQueue() {
+        return new Queue(EMAIL_PARKING_LOT_QUEUE_NAME, true);
+    }
+
+    @Bean
+    public Binding emailParkingLotBinding() {
+        return BindingBuilder
+                .bind(emailParkingLotQueue())
+                .to(emailRetryExchange())
+                .with(EMAIL_PARKING_LOT_QUEUE_NAME);
+    }
+
     @Bean
     public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -43,6 +89,8 @@ public class RabbitMQConfig {
                                          Jackson2JsonMessageConverter messageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(messageConverter);
+        // Boot's spring.rabbitmq.template.* settings are not applied to a user-defined template.
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 
@@ -56,4 +104,31 @@ public class RabbitMQConfig {
         factory.setMessageConverter(messageConverter);
         return factory;
     }
+
+    /**
+     * Email consumers receive up to batch-size messages at a time so each batch is sent over one SMTP
+     * connection; a partial batch is released after the receive timeout.
+     */
+    @Bean(EMAIL_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory emailBatchListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            Jackson2JsonMessageConverter messageConverter,
+            @Value("${email.consumer.concurrency:2}") int concurrency,
+            @Value("${email.consumer.max-concurrency:8}") int maxConcurrency,
+            @Value("${email.consumer.prefetch:50}") int prefetch,
+            @Value("${email.consumer.batch-size:25}") int batchSize,
+            @Value("${email.consumer.receive-timeout-ms:500}") long receiveTimeoutMs
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        return factory;
+    }
 }
@@ -0,0 +1,104 @@
+package org.lei.bill_buddy.config.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.UserSnapshotDTO;
+import org.lei.bill_buddy.util.EntityGenerations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verified auth token -> principal, so repeat requests with the same token skip signature
+ * verification and the user lookup. Tokens map to a user id and user ids to an immutable snapshot,
+ * so evicting a user is one removal that every token of that user sees. Token entries never outlive
+ * the token's own exp claim. Other nodes' evictions arrive with the user cache's broadcast on
+ * {@link org.lei.bill_buddy.util.TwoLevelCache#INVALIDATION_CHANNEL}.
+ */
+@Slf4j
+@Component
+public class AuthPrincipalCache {
+    private final Cache<String, Entry> tokens;
+    private final Cache<Long, UserSnapshotDTO> users;
+    private final EntityGenerations entityGenerations;
+    private final long maxTtlNanos;
+
+    public AuthPrincipalCache(EntityGenerations entityGenerations,
+                              @Value("${jwt.principal-cache.max-size:10000}") long maxSize,
+                              @Value("${jwt.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.entityGenerations = entityGenerations;
+        this.maxTtlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry value, long currentTime) {
+                        long untilExp = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(maxTtlNanos, untilExp));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Taken before loading a principal and passed to {@link #put}, so a user row that changed in between is not cached.
+     */
+    public long stamp() {
+        return entityGenerations.now();
+    }
+
+    public UserPrincipal get(String token) {
+        Entry entry = tokens.getIfPresent(hash(token));
+        if (entry == null) return null;
+        UserSnapshotDTO user = users.getIfPresent(entry.userId());
+        return user == null ? null : new UserPrincipal(user);
+    }
+
+    public void put(String token, UserPrincipal principal, Date expiresAt, long loadedAt) {
+        if (expiresAt == null) return;
+        String userKey = EntityGenerations.key(EntityGenerations.USER, principal.getId());
+        if (!entityGenerations.unchangedSince(loadedAt, List.of(userKey))) return;
+        users.put(principal.getId(), principal.getSnapshot());
+        tokens.put(hash(token), new Entry(principal.getId(), expiresAt.getTime()));
+    }
+
+    public void evictUser(Long userId) {
+        users.invalidate(userId);
+        log.debug("Evicted cached principal of user {}", userId);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(Long userId, long expiresAtMillis) {
+    }
+}
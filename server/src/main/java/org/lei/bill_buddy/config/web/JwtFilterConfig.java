@@ -1,5 +1,6 @@
 package org.lei.bill_buddy.config.web;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,13 +12,13 @@ import org.lei.bill_buddy.service.CustomUserDetailsService;
 import org.lei.bill_buddy.util.JwtUtil;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -26,6 +27,7 @@ public class JwtFilterConfig extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final AuthPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -39,16 +41,22 @@ public class JwtFilterConfig extends OncePerRequestFilter {
             if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
 
-                if (jwtUtil.validateToken(token)) {
-                    String email = jwtUtil.getEmailFromToken(token);
-
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+                UserPrincipal principal = principalCache.get(token);
+                if (principal == null) {
+                    Optional<Claims> claims = jwtUtil.tryParseClaims(token);
+                    if (claims.isPresent()) {
+                        long loadedAt = principalCache.stamp();
+                        principal = userDetailsService.loadUserByUsername(claims.get().get("email", String.class));
+                        principalCache.put(token, principal, claims.get().getExpiration(), loadedAt);
+                    }
+                }
 
+                if (principal != null) {
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(
-                                    userDetails,
+                                    principal,
                                     null,
-                                    userDetails.getAuthorities()
+                                    principal.getAuthorities()
                             );
 
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
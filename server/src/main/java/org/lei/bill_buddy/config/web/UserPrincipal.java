@@ -0,0 +1,62 @@
+package org.lei.bill_buddy.config.web;
+
+import org.lei.bill_buddy.DTO.UserSnapshotDTO;
+import org.lei.bill_buddy.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticated principal holding an immutable snapshot of the user row loaded once by the JWT filter,
+ * so the rest of the request can resolve the current user without another query. Principals are shared
+ * across requests through {@link AuthPrincipalCache}, so {@link #getUser()} hands out a fresh copy.
+ */
+public class UserPrincipal implements UserDetails {
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final UserSnapshotDTO snapshot;
+    private final String password;
+
+    public UserPrincipal(User user) {
+        this.snapshot = UserSnapshotDTO.from(user);
+        this.password = user.getPassword();
+    }
+
+    /**
+     * A principal restored from a verified token; it carries no password hash.
+     */
+    public UserPrincipal(UserSnapshotDTO snapshot) {
+        this.snapshot = snapshot;
+        this.password = null;
+    }
+
+    public Long getId() {
+        return snapshot.id();
+    }
+
+    public UserSnapshotDTO getSnapshot() {
+        return snapshot;
+    }
+
+    public User getUser() {
+        return snapshot.toEntity();
+    }
+
+    @Override
+    public String getUsername() {
+        return snapshot.email();
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+}
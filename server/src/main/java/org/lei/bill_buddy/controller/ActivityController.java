@@ -2,13 +2,18 @@ package org.lei.bill_buddy.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.lei.bill_buddy.DTO.ActivityDTO;
+import org.lei.bill_buddy.DTO.CursorPageDTO;
 import org.lei.bill_buddy.annotation.RateLimit;
+import org.lei.bill_buddy.model.Activity;
 import org.lei.bill_buddy.service.ActivityService;
 import org.lei.bill_buddy.service.UserService;
 import org.lei.bill_buddy.util.DtoConvertorUtil;
+import org.lei.bill_buddy.util.KeysetCursor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -27,12 +32,26 @@ public class ActivityController {
     @GetMapping
     public ResponseEntity<?> getMyActivities(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after
     ) {
         Long currentUserId = userService.getCurrentUser().getId();
+        if (after != null) {
+            Window<Activity> window = activityService.getActivitiesByUserIdAfter(currentUserId, KeysetCursor.parse(after), size);
+            String nextCursor = null;
+            if (window.hasNext() && !window.isEmpty()) {
+                Activity last = window.getContent().get(window.size() - 1);
+                nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).format();
+            }
+            return ResponseEntity.ok(new CursorPageDTO<>(dtoConvertorUtil.convertActivitiesToActivityDTOs(window.getContent()), nextCursor));
+        }
         Pageable pageable = PageRequest.of(page, size);
 
-        Page<ActivityDTO> activities = activityService.getActivitiesByUserId(currentUserId, pageable).map(dtoConvertorUtil::convertActivityToActivityDTO);
+        Page<Activity> activityPage = activityService.getActivitiesByUserId(currentUserId, pageable);
+        Page<ActivityDTO> activities = new PageImpl<>(
+                dtoConvertorUtil.convertActivitiesToActivityDTOs(activityPage.getContent()),
+                activityPage.getPageable(),
+                activityPage.getTotalElements());
         return ResponseEntity.ok(activities);
     }
 }
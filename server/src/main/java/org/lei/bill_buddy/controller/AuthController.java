@@ -17,7 +17,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collections;
@@ -34,7 +33,6 @@ public class AuthController {
     private final GoogleAuthService googleAuthService;
     private final JwtUtil jwtUtil;
     private final VerificationCodeUtil verificationCodeUtil;
-    private final PasswordEncoder passwordEncoder;
     private final EmailProducer emailProducer;
 
     @PostMapping("/register")
@@ -138,7 +136,7 @@ public class AuthController {
     @PostMapping("/update-password")
     public ResponseEntity<?> updatePassword(@RequestBody @Valid UserUpdatePasswordRequest request) {
         User user = userService.getCurrentUser();
-        if (passwordEncoder.matches(request.getOldPassword(), user.getPassword())) {
+        if (userService.passwordMatches(user.getId(), request.getOldPassword())) {
             String resetPasswordToken = jwtUtil.generateResetPasswordToken(user.getEmail());
             return ResponseEntity.ok(Map.of("token", resetPasswordToken));
         }
@@ -15,10 +15,13 @@ import org.lei.bill_buddy.service.GroupService;
 import org.lei.bill_buddy.service.RecurringExpenseService;
 import org.lei.bill_buddy.service.UserService;
 import org.lei.bill_buddy.util.DtoConvertorUtil;
+import org.lei.bill_buddy.util.KeysetCursor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -139,7 +142,7 @@ public class ExpenseController {
     }
 
     @GetMapping
-    public ResponseEntity<Page<ExpenseDTO>> getExpenses(
+    public ResponseEntity<?> getExpenses(
             @RequestParam Long groupId,
             @RequestParam(required = false) String title,
             @RequestParam(required = false) Long payerId,
@@ -149,8 +152,23 @@ public class ExpenseController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "expenseDate") String sortBy,
-            @RequestParam(defaultValue = "desc") String direction
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String after
     ) {
+        if (after != null) {
+            if (!sortBy.equals("expenseDate")) {
+                throw new AppException(ErrorCode.INVALID_REQUEST, "Cursor paging only supports sorting by expenseDate.");
+            }
+            Window<Expense> window = expenseService.getExpensesAfter(groupId, title, payerId, type, month, settled,
+                    KeysetCursor.parse(after), size, direction.equalsIgnoreCase("asc"));
+            String nextCursor = null;
+            if (window.hasNext() && !window.isEmpty()) {
+                Expense last = window.getContent().get(window.size() - 1);
+                nextCursor = new KeysetCursor(last.getExpenseDate(), last.getId()).format();
+            }
+            return ResponseEntity.ok(new CursorPageDTO<>(dtoConvertor.convertExpensesToExpenseDTOs(window.getContent()), nextCursor));
+        }
+
         Sort sort = direction.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
                 : Sort.by(sortBy).descending();
@@ -159,7 +177,10 @@ public class ExpenseController {
 
         Page<Expense> expensePage = expenseService.getExpenses(groupId, title, payerId, type, month, settled, pageable);
 
-        Page<ExpenseDTO> dtoPage = expensePage.map(dtoConvertor::convertExpenseToExpenseDTO);
+        Page<ExpenseDTO> dtoPage = new PageImpl<>(
+                dtoConvertor.convertExpensesToExpenseDTOs(expensePage.getContent()),
+                expensePage.getPageable(),
+                expensePage.getTotalElements());
 
         return ResponseEntity.ok(dtoPage);
     }
@@ -24,6 +24,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,8 @@ public class GroupController {
     private final FriendService friendService;
     private final ActivityService activityService;
     private final GroupDeleteService groupDeleteService;
+    private final SettlementPlanService settlementPlanService;
+    private final ExpenseImportService expenseImportService;
 
     @Value("${bill-buddy.client.url}")
     private List<String> clientUrls;
@@ -107,6 +110,23 @@ public class GroupController {
         return dtoConvertor.formatSettleInfoDTO(user, group);
     }
 
+    @GetMapping("/{groupId}/settlement-plan")
+    public SettlementPlanDTO getSettlementPlan(@PathVariable Long groupId) {
+        Group group = groupService.getGroupById(groupId);
+        if (group == null) throw new AppException(ErrorCode.GROUP_NOT_FOUND);
+        User user = userService.getCurrentUser();
+        if (!groupService.isMemberOfGroup(user.getId(), groupId)) throw new AppException(ErrorCode.NOT_A_MEMBER);
+        return dtoConvertor.formatSettlementPlanDTO(group, settlementPlanService.planForGroup(groupId));
+    }
+
+    @PostMapping(value = "/{groupId}/expenses:import", consumes = {"text/csv", "application/x-ndjson"})
+    public ExpenseImportResultDTO importExpenses(@PathVariable Long groupId, HttpServletRequest request) throws IOException {
+        User user = userService.getCurrentUser();
+        if (!groupService.isMemberOfGroup(user.getId(), groupId)) throw new AppException(ErrorCode.NOT_A_MEMBER);
+        ExpenseImportService.Format format = ExpenseImportService.Format.fromContentType(request.getContentType());
+        return expenseImportService.importExpenses(groupId, request.getInputStream(), format);
+    }
+
 
     @GetMapping("/{groupId}/invitation-link")
     public ResponseEntity<?> inviteLink(@PathVariable Long groupId) {
@@ -145,12 +165,7 @@ public class GroupController {
     public ResponseEntity<?> inviteMemberByEmail(@PathVariable Long groupId, @RequestParam String email,
                                                  HttpServletRequest request) {
 
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty()) {
-            ip = request.getRemoteAddr();
-        }
-
-        if (!rateLimiter.isAllowed(ip, 60)) {
+        if (!rateLimiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, request.getRemoteAddr(), 60)) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
                     .body("Too many requests. Please try again later.");
         }
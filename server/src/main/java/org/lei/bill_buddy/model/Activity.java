@@ -32,6 +32,8 @@ public class Activity {
     @Column(nullable = false)
     private Long objectId;
 
+    private Long groupId;
+
     @Column(nullable = false)
     private String template;
 
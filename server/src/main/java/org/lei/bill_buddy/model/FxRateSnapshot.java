@@ -0,0 +1,33 @@
+package org.lei.bill_buddy.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.lei.bill_buddy.enums.Currency;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One row per day. {@code rates} packs the base-currency vector as "EUR:0.92,GBP:0.79,...".
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "fx_rate_snapshots")
+public class FxRateSnapshot {
+
+    @Id
+    @Column(name = "rate_date")
+    private LocalDate rateDate;
+
+    @Column(name = "base_currency", nullable = false, length = 10)
+    @Enumerated(EnumType.STRING)
+    private Currency baseCurrency;
+
+    @Column(nullable = false, length = 512)
+    private String rates;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -4,13 +4,12 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Getter
 @Setter
-@Table(name = "group_debts")
+@Table(name = "group_debt_ledger")
 public class GroupDebt {
 
     @Id
@@ -22,15 +21,17 @@ public class GroupDebt {
     private Group group;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "lender_id", nullable = false)
-    private User lender;
+    @JoinColumn(name = "min_user_id", nullable = false)
+    private User minUser;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "borrower_id", nullable = false)
-    private User borrower;
+    @JoinColumn(name = "max_user_id", nullable = false)
+    private User maxUser;
 
-    @Column(nullable = false, precision = 10, scale = 2)
-    private BigDecimal amount;
+    // Positive: maxUser owes minUser. Negative: minUser owes maxUser.
+    @Column(name = "signed_amount", nullable = false, precision = 10, scale = 2)
+    @Convert(converter = MoneyConverter.class)
+    private Money signedAmount = Money.ZERO;
 
     @Column(nullable = false)
     private Boolean deleted = false;
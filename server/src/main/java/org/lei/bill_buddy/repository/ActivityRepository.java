@@ -6,35 +6,49 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ActivityRepository extends JpaRepository<Activity, Long> {
 
     @Query(value = """
-            SELECT a.*\s
+            SELECT a.*
             FROM activities a
-            WHERE\s
-                (
-                    (a.object_type = 'GROUP' AND a.object_id IN :groupIds)
-                    OR
-                    (a.object_type = 'EXPENSE' AND a.object_id IN :expenseIds)
-                )
-            ORDER BY a.created_at DESC
-           \s""",
+            WHERE a.group_id IN (SELECT gm.group_id FROM group_members gm WHERE gm.user_id = :userId)
+            ORDER BY a.created_at DESC, a.id DESC
+            """,
             countQuery = """
                     SELECT COUNT(*)
                     FROM activities a
-                    WHERE\s
-                        (
-                            (a.object_type = 'GROUP' AND a.object_id IN :groupIds)
-                            OR
-                            (a.object_type = 'EXPENSE' AND a.object_id IN :expenseIds)
-                        )
-                   \s""",
+                    WHERE a.group_id IN (SELECT gm.group_id FROM group_members gm WHERE gm.user_id = :userId)
+                    """,
             nativeQuery = true
     )
-    Page<Activity> findByExpenseIdsAndGroupIdsOrderByCreatedAtDesc(List<Long> expenseIds, List<Long> groupIds, Pageable pageable);
+    Page<Activity> findFeedByUserIdOrderByCreatedAtDesc(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(value = """
+            SELECT a.*
+            FROM activities a
+            WHERE a.group_id IN (SELECT gm.group_id FROM group_members gm WHERE gm.user_id = :userId)
+            ORDER BY a.created_at DESC, a.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Activity> findFeedFirstPage(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT a.*
+            FROM activities a
+            WHERE a.group_id IN (SELECT gm.group_id FROM group_members gm WHERE gm.user_id = :userId)
+              AND (a.created_at < :createdAt OR (a.created_at = :createdAt AND a.id < :id))
+            ORDER BY a.created_at DESC, a.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Activity> findFeedAfter(@Param("userId") Long userId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 @Param("limit") int limit);
 
     List<Activity> findByObjectTypeAndObjectIdOrderByCreatedAtDesc(ObjectType objectType, Long objectId);
 }
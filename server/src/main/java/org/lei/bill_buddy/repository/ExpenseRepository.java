@@ -1,6 +1,10 @@
 package org.lei.bill_buddy.repository;
 
 import org.lei.bill_buddy.model.Expense;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -14,6 +18,9 @@ import java.util.Optional;
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense> {
 
+    @Override
+    @EntityGraph(attributePaths = {"payer", "group"})
+    Page<Expense> findAll(Specification<Expense> spec, Pageable pageable);
 
     @Query("""
                 SELECT COUNT(e) FROM Expense e
@@ -55,7 +62,4 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpec
 
     @Query("SELECT e.id FROM Expense e WHERE e.group.id IN :groupIds AND e.deleted = false")
     List<Long> findIdsByGroupIdInAndDeletedFalse(List<Long> groupIds);
-
-    @Query("SELECT e.id FROM Expense e WHERE e.group.id IN :groupIds")
-    List<Long> findIdsByGroupIdIn(List<Long> groupIds);
 }
@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,5 +24,20 @@ public interface ExpenseShareRepository extends JpaRepository<ExpenseShare, Long
     Long countSharesByGroupAndUser(@Param("groupId") Long groupId, @Param("userId") Long userId);
 
     Optional<ExpenseShare> findByUserIdAndExpenseId(Long userId, Long expenseId);
+
+    @Query("""
+                SELECT s.expense.id AS expenseId, s.shareAmount AS shareAmount FROM ExpenseShare s
+                WHERE s.expense.id IN :expenseIds
+                AND s.user.id = :userId
+                AND s.deleted = false
+            """)
+    List<ShareAmountView> findShareAmountsByExpenseIdInAndUserId(@Param("expenseIds") Collection<Long> expenseIds,
+                                                                 @Param("userId") Long userId);
+
+    interface ShareAmountView {
+        Long getExpenseId();
+
+        BigDecimal getShareAmount();
+    }
 }
 
@@ -0,0 +1,28 @@
+package org.lei.bill_buddy.repository;
+
+import org.lei.bill_buddy.model.FxRateSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface FxRateSnapshotRepository extends JpaRepository<FxRateSnapshot, LocalDate> {
+    Optional<FxRateSnapshot> findTopByRateDateLessThanEqualOrderByRateDateDesc(LocalDate date);
+
+    // Returns 0 when the day already has a snapshot.
+    @Modifying
+    @Query(value = """
+            INSERT IGNORE INTO fx_rate_snapshots (rate_date, base_currency, rates, created_at)
+            VALUES (:rateDate, :baseCurrency, :rates, :createdAt)
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("rateDate") LocalDate rateDate,
+                       @Param("baseCurrency") String baseCurrency,
+                       @Param("rates") String rates,
+                       @Param("createdAt") LocalDateTime createdAt);
+}
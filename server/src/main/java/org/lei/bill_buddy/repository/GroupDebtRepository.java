@@ -6,40 +6,50 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface GroupDebtRepository extends JpaRepository<GroupDebt, Long> {
-    Optional<GroupDebt> findByGroupIdAndLenderIdAndBorrowerIdAndDeletedFalse(Long groupId, Long lenderId, Long borrowerId);
+    Optional<GroupDebt> findByGroupIdAndMinUserIdAndMaxUserIdAndDeletedFalse(Long groupId, Long minUserId, Long maxUserId);
 
-    List<GroupDebt> findByGroupIdAndBorrowerIdAndDeletedFalse(Long groupId, Long borrowerId);
-
-    List<GroupDebt> findByGroupIdAndLenderIdAndDeletedFalse(Long groupId, Long lenderId);
-
-    List<GroupDebt> findByLenderIdAndBorrowerIdAndDeletedFalse(Long lenderId, Long borrowerId);
+    List<GroupDebt> findByGroupIdAndMinUserIdInAndMaxUserIdInAndDeletedFalse(Long groupId, Collection<Long> minUserIds, Collection<Long> maxUserIds);
 
     List<GroupDebt> findByGroupIdAndDeletedFalse(Long groupId);
 
-    @Modifying
     @Query("""
-                UPDATE GroupDebt gd
-                SET gd.deleted = true
+                SELECT gd FROM GroupDebt gd
+                WHERE gd.group.id = :groupId
+                  AND (gd.minUser.id = :userId OR gd.maxUser.id = :userId)
+                  AND gd.deleted = false
+            """)
+    List<GroupDebt> findByGroupIdAndUserIdAndDeletedFalse(@Param("groupId") Long groupId, @Param("userId") Long userId);
+
+    @Query("""
+                SELECT gd FROM GroupDebt gd
                 WHERE gd.group.id = :groupId
-                  AND gd.lender.id = :lenderId
+                  AND (gd.minUser.id = :userId OR gd.maxUser.id = :userId)
+            """)
+    List<GroupDebt> findByGroupIdAndUserIdIncludeDeleted(@Param("groupId") Long groupId, @Param("userId") Long userId);
+
+    @Query("""
+                SELECT gd FROM GroupDebt gd
+                JOIN FETCH gd.group
+                WHERE gd.minUser.id = :minUserId
+                  AND gd.maxUser.id = :maxUserId
                   AND gd.deleted = false
             """)
-    void softDeleteByGroupIdAndLenderIdAndDeletedFalse(@Param("groupId") Long groupId, @Param("lenderId") Long lenderId);
+    List<GroupDebt> findByMinUserIdAndMaxUserIdAndDeletedFalse(@Param("minUserId") Long minUserId, @Param("maxUserId") Long maxUserId);
 
     @Modifying
     @Query("""
                 UPDATE GroupDebt gd
                 SET gd.deleted = true
                 WHERE gd.group.id = :groupId
-                  AND gd.borrower.id = :borrowerId
+                  AND (gd.minUser.id = :userId OR gd.maxUser.id = :userId)
                   AND gd.deleted = false
             """)
-    void softDeleteByGroupIdAndBorrowerIdAndDeletedFalse(@Param("groupId") Long groupId, @Param("borrowerId") Long borrowerId);
-
+    void softDeleteByGroupIdAndUserIdAndDeletedFalse(@Param("groupId") Long groupId, @Param("userId") Long userId);
 
     @Modifying
     @Query("""
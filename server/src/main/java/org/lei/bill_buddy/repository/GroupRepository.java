@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +22,29 @@ public interface GroupRepository extends JpaRepository<Group, Long> {
     @Modifying
     @Query("UPDATE Group g SET g.deleted = true WHERE g.id = :groupId")
     void softDeleteByGroupId(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query("UPDATE Group g SET g.updatedAt = :updatedAt WHERE g.id = :groupId")
+    void touchUpdatedAt(@Param("groupId") Long groupId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Query(value = "SELECT unsettled_pairs FROM groups_table WHERE id = :groupId", nativeQuery = true)
+    Integer findUnsettledPairsById(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query(value = "UPDATE groups_table SET unsettled_pairs = unsettled_pairs + :delta WHERE id = :groupId", nativeQuery = true)
+    void adjustUnsettledPairs(@Param("groupId") Long groupId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = """
+            UPDATE groups_table
+            SET unsettled_pairs = (SELECT COUNT(*)
+                                   FROM group_debt_ledger gd
+                                   WHERE gd.group_id = :groupId
+                                     AND gd.deleted = FALSE
+                                     AND gd.signed_amount <> 0)
+            WHERE id = :groupId
+            """, nativeQuery = true)
+    void recountUnsettledPairs(@Param("groupId") Long groupId);
 }
 
 
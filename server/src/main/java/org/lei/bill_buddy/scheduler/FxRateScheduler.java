@@ -1,10 +1,11 @@
 package org.lei.bill_buddy.scheduler;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.service.ExchangeRateService;
 import org.lei.bill_buddy.util.ExchangeRateFetcher;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.lei.bill_buddy.util.FxRateTable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -12,36 +13,77 @@ import java.math.BigDecimal;
 import java.time.Duration;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class FxRateScheduler {
 
-    private static final long TTL_SECONDS = 6 * 60 * 60;
     private final ExchangeRateFetcher fetcher;
 
-    private final StringRedisTemplate redis;
+    private final ExchangeRateService exchangeRateService;
 
-    @Scheduled(fixedRateString = "PT6H", initialDelay = 0)
+    private final boolean pairMode;
+
+    private final Currency baseCurrency;
+
+    private final Duration refreshInterval;
+
+    public FxRateScheduler(ExchangeRateFetcher fetcher,
+                           ExchangeRateService exchangeRateService,
+                           @Value("${fx.refresh.mode:base}") String mode,
+                           @Value("${fx.refresh.base-currency:USD}") Currency baseCurrency,
+                           @Value("${fx.refresh.interval:PT6H}") Duration refreshInterval) {
+        this.fetcher = fetcher;
+        this.exchangeRateService = exchangeRateService;
+        this.pairMode = "pair".equalsIgnoreCase(mode);
+        this.baseCurrency = baseCurrency;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Scheduled(fixedRateString = "${fx.refresh.interval:PT6H}", initialDelay = 0)
     public void refreshRates() {
-        log.info("Refreshing FX rates for ALL currency pairs…");
         try {
-            Currency[] all = Currency.values();
+            if (exchangeRateService.adoptSharedTable(refreshInterval)) {
+                log.info("FX rates adopted from the shared snapshot");
+            } else {
+                FxRateTable fresh = pairMode ? fetchAllPairs() : fetchBaseVector();
+                exchangeRateService.publish(fresh);
+            }
+            exchangeRateService.recordDailySnapshot(exchangeRateService.currentTable(), baseCurrency);
+        } catch (Exception e) {
+            log.error("Global FX refresh failed", e);
+        }
+    }
 
-            for (Currency base : all) {
-                String hashKey = "fx:" + base;
-                for (Currency target : all) {
-                    if (base == target) continue;
+    private FxRateTable fetchBaseVector() {
+        log.info("Refreshing FX rates from the {} base vector…", baseCurrency);
+        FxRateTable fresh = FxRateTable.fromBaseVector(fetcher.fetchLatest(baseCurrency));
+        log.info("FX rates refreshed for {} currencies with one fetch", Currency.values().length);
+        return fresh;
+    }
+
+    private FxRateTable fetchAllPairs() {
+        log.info("Refreshing FX rates for ALL currency pairs…");
+        Currency[] all = Currency.values();
+        FxRateTable previous = exchangeRateService.currentTable();
+        FxRateTable.Builder builder = FxRateTable.builder();
+        int failed = 0;
 
-                    BigDecimal rate = fetcher.fetch(base, target);
-                    redis.opsForHash().put(hashKey, target.name(), rate.toPlainString());
+        for (Currency base : all) {
+            for (Currency target : all) {
+                if (base == target) continue;
+                BigDecimal rate;
+                try {
+                    rate = fetcher.fetch(base, target);
+                } catch (Exception e) {
+                    failed++;
+                    rate = previous.rate(base, target);
+                    log.warn("FX pair {}->{} failed, keeping last known rate {}", base, target, rate);
                 }
-                redis.expire(hashKey, Duration.ofSeconds(TTL_SECONDS));
+                builder.put(base, target, rate);
             }
-
-            log.info("FX rates refreshed for {} currencies, ~{} pairs",
-                    all.length, (all.length * (all.length - 1)));
-        } catch (Exception e) {
-            log.error("Global FX refresh failed", e);
         }
+
+        log.info("FX rates refreshed for {} currencies, ~{} pairs, {} failed",
+                all.length, (all.length * (all.length - 1)), failed);
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package org.lei.bill_buddy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.model.Activity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Buffers committed activity events and writes them to the activities table in JDBC batches,
+ * off the request thread. A batch that fails is written row by row; rows that still fail are
+ * retried on later flushes and only given up on, counted and logged, after max-attempts.
+ */
+@Slf4j
+@Component
+public class ActivityLogWriter {
+    private static final String INSERT_SQL = """
+            INSERT INTO activities (user_id, action, object_type, object_id, group_id, template, params, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Activity> queue;
+    private final Queue<Pending> retries = new ConcurrentLinkedQueue<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter overflowCounter;
+    private final Counter failedBatchCounter;
+    private final Counter droppedCounter;
+
+    public ActivityLogWriter(JdbcTemplate jdbcTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${activity.writer.queue-capacity:10000}") int queueCapacity,
+                             @Value("${activity.writer.batch-size:200}") int batchSize,
+                             @Value("${activity.writer.max-attempts:5}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        Gauge.builder("activity.writer.queue.depth", queue, BlockingQueue::size)
+                .description("Activity events waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("activity.writer.retry.depth", retries, Queue::size)
+                .description("Activity events waiting to be retried after a failed write")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("activity.writer.flush")
+                .description("Time spent writing one batch of activity events")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("activity.writer.written").register(meterRegistry);
+        this.overflowCounter = Counter.builder("activity.writer.overflow").register(meterRegistry);
+        this.failedBatchCounter = Counter.builder("activity.writer.batch.failures").register(meterRegistry);
+        this.droppedCounter = Counter.builder("activity.writer.dropped")
+                .description("Activity events given up on after max-attempts failed writes")
+                .register(meterRegistry);
+    }
+
+    public void enqueue(Activity activity) {
+        if (queue.offer(activity)) return;
+        // Queue is full: write this event on the caller's thread rather than losing it.
+        overflowCounter.increment();
+        log.warn("Activity queue full, writing activity synchronously");
+        writeOne(activity, 1);
+    }
+
+    @Scheduled(fixedDelayString = "${activity.writer.flush-interval-ms:500}")
+    public void flush() {
+        retryFailed();
+        List<Activity> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        // No later flush is coming, so spend the remaining attempts now.
+        while (!retries.isEmpty()) {
+            retryFailed();
+        }
+    }
+
+    private void writeBatch(List<Activity> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            failedBatchCounter.increment();
+            log.error("Failed to write {} activities as a batch, writing them one by one", batch.size(), e);
+            for (Activity activity : batch) {
+                writeOne(activity, 1);
+            }
+        }
+    }
+
+    private void writeOne(Activity activity, int attempt) {
+        try {
+            write(List.of(activity));
+        } catch (Exception e) {
+            if (attempt < maxAttempts) {
+                retries.add(new Pending(activity, attempt));
+                return;
+            }
+            droppedCounter.increment();
+            log.error("Dropping activity after {} failed writes: user={} action={} object={}:{} template={} params={}",
+                    attempt, activity.getUserId(), activity.getAction(), activity.getObjectType(),
+                    activity.getObjectId(), activity.getTemplate(), activity.getParams(), e);
+        }
+    }
+
+    private void retryFailed() {
+        for (int pending = retries.size(); pending > 0; pending--) {
+            Pending next = retries.poll();
+            if (next == null) return;
+            writeOne(next.activity(), next.attempts() + 1);
+        }
+    }
+
+    private void write(List<Activity> batch) {
+        flushTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, a) -> {
+            ps.setLong(1, a.getUserId());
+            ps.setString(2, a.getAction().name());
+            ps.setString(3, a.getObjectType().name());
+            ps.setLong(4, a.getObjectId());
+            if (a.getGroupId() != null) ps.setLong(5, a.getGroupId());
+            else ps.setNull(5, Types.BIGINT);
+            ps.setString(6, a.getTemplate());
+            ps.setString(7, a.getParams());
+            ps.setTimestamp(8, Timestamp.valueOf(a.getCreatedAt()));
+        }));
+        writtenCounter.increment(batch.size());
+    }
+
+    private record Pending(Activity activity, int attempts) {
+    }
+}
@@ -8,11 +8,15 @@ import org.lei.bill_buddy.enums.ObjectType;
 import org.lei.bill_buddy.model.Activity;
 import org.lei.bill_buddy.repository.ActivityRepository;
 import org.lei.bill_buddy.repository.ExpenseRepository;
-import org.lei.bill_buddy.repository.GroupMemberRepository;
+import org.lei.bill_buddy.util.KeysetCursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,20 +28,28 @@ import java.util.Map;
 public class ActivityService {
 
     private final ActivityRepository activityRepository;
-    private final GroupMemberRepository groupMemberRepository;
     private final ExpenseRepository expenseRepository;
     private final UserService userService;
+    private final ActivityLogWriter activityLogWriter;
     private final Gson gson = new Gson();
 
     @Transactional(readOnly = true)
     public Page<Activity> getActivitiesByUserId(Long userId, Pageable pageable) {
         log.info("Fetching activities for userId={} with paging", userId);
-        List<Long> groupIds = groupMemberRepository.findGroupIdsByUserId(userId);
-        List<Long> expenseIds = expenseRepository.findIdsByGroupIdIn(groupIds);
-        return activityRepository.findByExpenseIdsAndGroupIdsOrderByCreatedAtDesc(
-                expenseIds,
-                groupIds,
-                pageable);
+        return activityRepository.findFeedByUserIdOrderByCreatedAtDesc(userId, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public Window<Activity> getActivitiesByUserIdAfter(Long userId, KeysetCursor after, int size) {
+        log.info("Fetching activities for userId={} after cursor {}", userId, after);
+        List<Activity> rows = after == null
+                ? activityRepository.findFeedFirstPage(userId, size + 1)
+                : activityRepository.findFeedAfter(userId, after.timestamp(), after.id(), size + 1);
+        boolean hasNext = rows.size() > size;
+        List<Activity> content = hasNext ? rows.subList(0, size) : rows;
+        return Window.from(content,
+                i -> ScrollPosition.forward(Map.of("createdAt", content.get(i).getCreatedAt(), "id", content.get(i).getId())),
+                hasNext);
     }
 
     @Transactional(readOnly = true)
@@ -46,18 +58,33 @@ public class ActivityService {
         return activityRepository.findByObjectTypeAndObjectIdOrderByCreatedAtDesc(ObjectType.EXPENSE, expenseId);
     }
 
-    @Transactional
     public void log(ActionType action, ObjectType objectType, Long objectId, String template, Map<String, Object> params) {
         Activity activity = new Activity();
         activity.setUserId(userService.getCurrentUser().getId());
         activity.setAction(action);
         activity.setObjectType(objectType);
         activity.setObjectId(objectId);
+        activity.setGroupId(resolveGroupId(objectType, objectId, params));
         activity.setTemplate(template);
         activity.setParams(gson.toJson(params));
         activity.setCreatedAt(LocalDateTime.now());
 
-        activityRepository.save(activity);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    activityLogWriter.enqueue(activity);
+                }
+            });
+        } else {
+            activityLogWriter.enqueue(activity);
+        }
     }
-}
 
+    private Long resolveGroupId(ObjectType objectType, Long objectId, Map<String, Object> params) {
+        if (objectType == ObjectType.GROUP) return objectId;
+        Object groupId = params.get("groupId");
+        if (groupId != null) return Long.valueOf(groupId.toString());
+        return expenseRepository.findById(objectId).map(e -> e.getGroup().getId()).orElse(null);
+    }
+}
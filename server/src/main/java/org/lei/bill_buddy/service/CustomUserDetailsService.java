@@ -3,15 +3,13 @@ package org.lei.bill_buddy.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.config.web.UserPrincipal;
 import org.lei.bill_buddy.enums.ErrorCode;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.repository.UserRepository;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -20,7 +18,7 @@ public class CustomUserDetailsService implements UserDetailsService {
     private final UserRepository userRepository;
 
     @Override
-    public UserDetails loadUserByUsername(String name) throws UsernameNotFoundException {
+    public UserPrincipal loadUserByUsername(String name) throws UsernameNotFoundException {
         log.info("Attempting to load user by email: {}", name);
 
         User user = userRepository.findByEmailAndDeletedFalse(name)
@@ -31,10 +29,6 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         log.info("User found: {}", user.getEmail());
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-        );
+        return new UserPrincipal(user);
     }
 }
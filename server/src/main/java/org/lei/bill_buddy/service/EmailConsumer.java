@@ -1,87 +1,267 @@
 package org.lei.bill_buddy.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.DTO.EmailDTO;
 import org.lei.bill_buddy.config.util.RabbitMQConfig;
+import org.lei.bill_buddy.util.EmailTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmailConsumer {
+    private static final EmailTemplate INVITE_TEMPLATE = EmailTemplate.load("templates/invite-email.html");
+    private static final EmailTemplate VERIFICATION_TEMPLATE = EmailTemplate.load("templates/verification-code-email.html");
+    private static final ParameterizedTypeReference<EmailDTO> EMAIL_TYPE = new ParameterizedTypeReference<>() {
+    };
+    private static final String SENT_PREFIX = "email_sent:";
+    private static final String IN_FLIGHT = "in-flight";
+    private static final String SENT = "sent";
+
     private final JavaMailSender mailSender;
+    private final RabbitTemplate rabbitTemplate;
+    private final Jackson2JsonMessageConverter messageConverter;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String fromEmail;
+    private final String expirationMinutes;
+    private final int maxRetries;
+    private final Duration idempotencyTtl;
+    private final Duration inFlightTtl;
+    private final Timer queueLag;
+    private final Counter sent;
+    private final Counter parked;
+    private final Counter duplicates;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    public EmailConsumer(JavaMailSender mailSender,
+                         RabbitTemplate rabbitTemplate,
+                         Jackson2JsonMessageConverter messageConverter,
+                         StringRedisTemplate redisTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${spring.mail.username}") String fromEmail,
+                         @Value("#{${reset-password.code.expiration}}") long codeExpirationMillis,
+                         @Value("${email.retry.delays-ms:10000,60000,300000}") List<Long> retryDelaysMs,
+                         @Value("${email.idempotency.ttl-seconds:86400}") long idempotencyTtlSeconds,
+                         @Value("${email.idempotency.in-flight-seconds:60}") long inFlightSeconds) {
+        this.mailSender = mailSender;
+        this.rabbitTemplate = rabbitTemplate;
+        this.messageConverter = messageConverter;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.fromEmail = fromEmail;
+        this.expirationMinutes = Long.toString(codeExpirationMillis / 1000 / 60);
+        this.maxRetries = retryDelaysMs.size();
+        this.idempotencyTtl = Duration.ofSeconds(idempotencyTtlSeconds);
+        this.inFlightTtl = Duration.ofSeconds(inFlightSeconds);
+        this.queueLag = Timer.builder("email.queue.lag")
+                .description("Time from publishing an email task to a consumer picking it up")
+                .register(meterRegistry);
+        this.sent = Counter.builder("email.sent").register(meterRegistry);
+        this.parked = Counter.builder("email.parked").register(meterRegistry);
+        this.duplicates = Counter.builder("email.duplicates").register(meterRegistry);
+    }
 
-    @Value("#{${reset-password.code.expiration}}")
-    private long codeExpirationMillis;
+    /**
+     * Renders a batch of email tasks and hands them to the mail sender in one call,
+     * which delivers them over a single SMTP connection. Tasks that fail to send go to the
+     * next retry delay queue; tasks that can never be sent go to the parking lot.
+     */
+    @RabbitListener(queues = RabbitMQConfig.EMAIL_QUEUE_NAME,
+            containerFactory = RabbitMQConfig.EMAIL_BATCH_CONTAINER_FACTORY)
+    public void handleMessages(List<Message> messages) {
+        log.info("Received {} email tasks", messages.size());
+        long now = System.currentTimeMillis();
 
-    @RabbitListener(queues = RabbitMQConfig.EMAIL_QUEUE_NAME)
-    public void handleMessage(EmailDTO email) {
-        log.info("Received email task: {}", email);
+        Map<MimeMessage, Message> outgoing = new LinkedHashMap<>();
+        for (Message message : messages) {
+            MessageProperties properties = message.getMessageProperties();
+            if (properties.getTimestamp() != null) {
+                queueLag.record(Math.max(0, now - properties.getTimestamp().getTime()), TimeUnit.MILLISECONDS);
+            }
+            Claim claim = claim(message);
+            if (claim == Claim.SENT) {
+                duplicates.increment();
+                log.info("Skipping email task {} that was already sent", properties.getMessageId());
+                continue;
+            }
+            if (claim == Claim.IN_FLIGHT) {
+                // Another delivery holds the claim, or its consumer died before sending; check again later.
+                defer(message);
+                continue;
+            }
+            try {
+                EmailDTO email = (EmailDTO) messageConverter.fromMessage(message, EMAIL_TYPE);
+                MimeMessage mimeMessage = buildMessage(email);
+                if (mimeMessage == null) {
+                    release(message);
+                    park(message);
+                    continue;
+                }
+                outgoing.put(mimeMessage, message);
+            } catch (Exception e) {
+                log.error("Failed to process email task {}", properties.getMessageId(), e);
+                release(message);
+                park(message);
+            }
+        }
+        if (outgoing.isEmpty()) return;
 
         try {
-            switch (email.getType().toLowerCase()) {
-                case "verify" -> sendVerificationCodeEmail(
-                        email.getGivenName(),
-                        email.getToEmail(),
-                        email.getCode()
-                );
-                case "invite" -> sendInvitationEmail(
-                        email.getGroupName(),
-                        email.getToEmail(),
-                        email.getInviteLink()
-                );
-                default -> log.warn("Unknown email type: {}", email.getType());
-            }
+            mailSender.send(outgoing.keySet().toArray(MimeMessage[]::new));
+            outgoing.values().forEach(this::markSent);
+            sent.increment(outgoing.size());
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            outgoing.forEach((mimeMessage, message) -> {
+                Exception cause = failed.isEmpty() ? e : failed.get(mimeMessage);
+                if (cause == null) {
+                    markSent(message);
+                    sent.increment();
+                    return;
+                }
+                log.error("Failed to send email to {}", recipients(mimeMessage), cause);
+                release(message);
+                retry(message);
+            });
         } catch (Exception e) {
-            log.error("Failed to process email task: {}", email, e);
+            log.error("Failed to send batch of {} emails", outgoing.size(), e);
+            outgoing.values().forEach(message -> {
+                release(message);
+                retry(message);
+            });
         }
     }
 
-    private void sendEmail(String toEmail, String subject, String content) throws MessagingException {
-        log.info("Sending email to: {} | Subject: {}", toEmail, subject);
+    MimeMessage buildMessage(EmailDTO email) throws MessagingException {
+        return switch (email.getType().toLowerCase()) {
+            case "verify" -> buildVerificationCodeEmail(email.getGivenName(), email.getToEmail(), email.getCode());
+            case "invite" -> buildInvitationEmail(email.getGroupName(), email.getToEmail(), email.getInviteLink());
+            default -> {
+                log.warn("Unknown email type: {}", email.getType());
+                yield null;
+            }
+        };
+    }
+
+    public void sendInvitationEmail(String groupName, String toEmail, String inviteLink) throws MessagingException {
+        mailSender.send(buildInvitationEmail(groupName, toEmail, inviteLink));
+    }
+
+    public void sendVerificationCodeEmail(String givenName, String toEmail, String code) throws MessagingException {
+        mailSender.send(buildVerificationCodeEmail(givenName, toEmail, code));
+    }
+
+    private MimeMessage buildInvitationEmail(String groupName, String toEmail, String inviteLink) throws MessagingException {
+        String htmlContent = INVITE_TEMPLATE.render(Map.of(
+                "groupName", groupName,
+                "inviteLink", inviteLink));
+        return buildEmail(toEmail, "You have been invited to join the group: " + groupName, htmlContent);
+    }
+
+    private MimeMessage buildVerificationCodeEmail(String givenName, String toEmail, String code) throws MessagingException {
+        String htmlContent = VERIFICATION_TEMPLATE.render(Map.of(
+                "givenName", givenName,
+                "verificationCode", code,
+                "expirationTime", expirationMinutes));
+        return buildEmail(toEmail, "Reset Password Link", htmlContent);
+    }
+
+    private MimeMessage buildEmail(String toEmail, String subject, String content) throws MessagingException {
+        log.info("Preparing email to: {} | Subject: {}", toEmail, subject);
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
         helper.setFrom(fromEmail);
         helper.setTo(toEmail);
         helper.setSubject(subject);
         helper.setText(content, true);
-        mailSender.send(message);
-        log.info("Email sent successfully to {}", toEmail);
+        return message;
+    }
+
+    private enum Claim { CLAIMED, IN_FLIGHT, SENT }
+
+    /**
+     * Marks the task as in flight, keyed by its message id, with a short TTL so a claim left by a consumer
+     * that died mid-send lapses. Only a successful send turns it into a long-lived sent marker.
+     * Tasks published without an id cannot be deduplicated and are always processed.
+     */
+    private Claim claim(Message message) {
+        String messageId = message.getMessageProperties().getMessageId();
+        if (messageId == null) return Claim.CLAIMED;
+        String key = SENT_PREFIX + messageId;
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, IN_FLIGHT, inFlightTtl))) {
+            return Claim.CLAIMED;
+        }
+        return SENT.equals(redisTemplate.opsForValue().get(key)) ? Claim.SENT : Claim.IN_FLIGHT;
+    }
+
+    private void markSent(Message message) {
+        String messageId = message.getMessageProperties().getMessageId();
+        if (messageId != null) redisTemplate.opsForValue().set(SENT_PREFIX + messageId, SENT, idempotencyTtl);
+    }
+
+    private void release(Message message) {
+        String messageId = message.getMessageProperties().getMessageId();
+        if (messageId != null) redisTemplate.delete(SENT_PREFIX + messageId);
     }
 
-    public void sendInvitationEmail(String groupName, String toEmail, String inviteLink) throws MessagingException, IOException {
-        String templatePath = "templates/invite-email.html";
-        Resource resource = new ClassPathResource(templatePath);
-        String htmlContent = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    private void retry(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Integer previous = properties.getHeader(RabbitMQConfig.EMAIL_ATTEMPT_HEADER);
+        int attempt = (previous == null ? 0 : previous) + 1;
+        if (attempt > maxRetries) {
+            park(message);
+            return;
+        }
+        properties.setHeader(RabbitMQConfig.EMAIL_ATTEMPT_HEADER, attempt);
+        rabbitTemplate.send(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME, RabbitMQConfig.EMAIL_RETRY_QUEUE_PREFIX + attempt, message);
+        Counter.builder("email.retries")
+                .tag("attempt", Integer.toString(attempt))
+                .register(meterRegistry)
+                .increment();
+        log.info("Scheduled email task {} for retry {} of {}", properties.getMessageId(), attempt, maxRetries);
+    }
 
-        htmlContent = htmlContent.replace("{{groupName}}", groupName);
-        htmlContent = htmlContent.replace("{{inviteLink}}", inviteLink);
-        sendEmail(toEmail, "You have been invited to join the group: " + groupName, htmlContent);
+    /**
+     * Parks the task in the first delay queue without spending one of its retry attempts.
+     */
+    private void defer(Message message) {
+        rabbitTemplate.send(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME, RabbitMQConfig.EMAIL_RETRY_QUEUE_PREFIX + 1, message);
+        log.info("Email task {} is in flight elsewhere, checking again later", message.getMessageProperties().getMessageId());
     }
 
-    public void sendVerificationCodeEmail(String givenName, String toEmail, String code) throws MessagingException, IOException {
-        String templatePath = "templates/verification-code-email.html";
-        Resource resource = new ClassPathResource(templatePath);
-        String htmlContent = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    private void park(Message message) {
+        rabbitTemplate.send(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME, RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME, message);
+        parked.increment();
+        log.warn("Moved email task {} to the parking lot", message.getMessageProperties().getMessageId());
+    }
 
-        htmlContent = htmlContent.replace("{{givenName}}", givenName);
-        htmlContent = htmlContent.replace("{{verificationCode}}", code);
-        htmlContent = htmlContent.replace("{{expirationTime}}", Long.toString(codeExpirationMillis / 1000 / 60));
-        sendEmail(toEmail, "Reset Password Link", htmlContent);
+    private static String recipients(MimeMessage message) {
+        try {
+            return Arrays.toString(message.getAllRecipients());
+        } catch (MessagingException e) {
+            return String.valueOf(message);
+        }
     }
 }
@@ -1,18 +1,89 @@
 package org.lei.bill_buddy.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.DTO.EmailDTO;
 import org.lei.bill_buddy.config.util.RabbitMQConfig;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmailProducer {
     private final RabbitTemplate rabbitTemplate;
+    private final int maxAttempts;
+    private final long retryDelayMs;
+    private final Counter publishFailures;
+    private final Counter publishParked;
+
+    public EmailProducer(RabbitTemplate rabbitTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${email.publish.max-attempts:3}") int maxAttempts,
+                         @Value("${email.publish.retry-delay-ms:200}") long retryDelayMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMs = retryDelayMs;
+        this.publishFailures = Counter.builder("email.publish.failures")
+                .description("Email task publishes the broker nacked or could not route")
+                .register(meterRegistry);
+        this.publishParked = Counter.builder("email.publish.parked")
+                .description("Email tasks sent to the parking lot because they could not be published")
+                .register(meterRegistry);
+    }
 
+    /**
+     * Publishes with a unique message id, which consumers use as the idempotency key, and a timestamp
+     * for queue lag. The broker's confirm is checked asynchronously so callers are not blocked.
+     */
     public void sendEmail(EmailDTO email) {
-        rabbitTemplate.convertAndSend(RabbitMQConfig.EMAIL_EXCHANGE_NAME, RabbitMQConfig.EMAIL_ROUTING_KEY, email);
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(UUID.randomUUID().toString());
+        properties.setTimestamp(new Date());
+        Message message = rabbitTemplate.getMessageConverter().toMessage(email, properties);
+        publish(message, RabbitMQConfig.EMAIL_EXCHANGE_NAME, RabbitMQConfig.EMAIL_ROUTING_KEY, 1);
     }
-}
 
+    /**
+     * A nacked publish is retried with a growing delay up to max-attempts; a task that still cannot be
+     * published, or that the broker could not route, goes to the parking lot instead of being lost.
+     * Follow-up publishes run on a delayed executor, never on the connection thread that delivered the confirm.
+     */
+    private void publish(Message message, String exchange, String routingKey, int attempt) {
+        String messageId = message.getMessageProperties().getMessageId();
+        CorrelationData correlation = new CorrelationData(messageId + ":" + attempt);
+        rabbitTemplate.send(exchange, routingKey, message, correlation);
+
+        correlation.getFuture().whenCompleteAsync((confirm, ex) -> {
+            boolean returned = correlation.getReturned() != null;
+            if (ex == null && confirm != null && confirm.isAck() && !returned) return;
+
+            publishFailures.increment();
+            String reason = returned ? "unroutable: " + correlation.getReturned().getReplyText()
+                    : ex != null ? ex.getMessage() : confirm == null ? "no confirm" : confirm.getReason();
+            boolean parking = RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME.equals(routingKey);
+
+            if (!returned && attempt < maxAttempts) {
+                log.warn("Email task {} was not confirmed ({}), retrying publish {} of {}",
+                        messageId, reason, attempt + 1, maxAttempts);
+                publish(message, exchange, routingKey, attempt + 1);
+            } else if (!parking) {
+                log.error("Email task {} could not be published ({}), moving it to the parking lot", messageId, reason);
+                publishParked.increment();
+                publish(message, RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME, RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME, 1);
+            } else {
+                log.error("Email task {} could not be published to the parking lot either ({}): {}",
+                        messageId, reason, new String(message.getBody()));
+            }
+        }, CompletableFuture.delayedExecutor(retryDelayMs * attempt, TimeUnit.MILLISECONDS));
+    }
+}
@@ -1,15 +1,32 @@
 package org.lei.bill_buddy.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.repository.FxRateSnapshotRepository;
 import org.lei.bill_buddy.util.ExchangeRateFetcher;
+import org.lei.bill_buddy.util.FxRateTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
@@ -18,26 +35,175 @@ public class ExchangeRateService {
 
     private final StringRedisTemplate redis;
     private final ExchangeRateFetcher fetcher;
+    private final FxRateSnapshotRepository fxRateSnapshotRepository;
 
-    private static final long TTL_SECONDS = 6 * 60 * 60;
+    // Kept well past the refresh interval so getRate can fall back to the hashes between refreshes;
+    // freshness for adoption is judged by the fetched-at stamp, not by the TTL.
+    private static final long TTL_SECONDS = 24 * 60 * 60;
+    private static final String FETCHED_AT_KEY = "fx:fetched-at";
+
+    private final AtomicReference<FxRateTable> table = new AtomicReference<>(FxRateTable.empty());
+
+    // Epoch millis at which the rates in the local table were fetched from the provider.
+    private final AtomicLong tableFetchedAt = new AtomicLong();
+
+    @Value("${fx.history.cache-days:366}")
+    private long historyCacheDays;
+
+    // Past days never change once written, so a day's table is loaded from the database at most once.
+    // Days with nothing on record are not cached, so they pick up a snapshot written later.
+    private LoadingCache<LocalDate, FxRateTable> historicalTables;
+
+    // The last day this node saw a snapshot on record, so later refreshes that day skip the insert.
+    private final AtomicReference<LocalDate> snapshotRecordedFor = new AtomicReference<>();
+
+    @PostConstruct
+    void init() {
+        this.historicalTables = Caffeine.newBuilder()
+                .maximumSize(historyCacheDays)
+                .build(this::loadHistoricalTable);
+    }
 
     public BigDecimal convert(BigDecimal amt, Currency from, Currency to) {
         return amt.multiply(getRate(from, to)).setScale(2, RoundingMode.HALF_UP);
     }
 
+    /**
+     * Converts at the rate recorded for the given day, or the closest earlier day on record.
+     * Today, future dates and days before the first snapshot use the live table.
+     */
+    public BigDecimal convertAt(BigDecimal amt, Currency from, Currency to, LocalDate date) {
+        if (from == to || date == null || !date.isBefore(LocalDate.now())) return convert(amt, from, to);
+        FxRateTable history = historicalTables.get(date);
+        BigDecimal rate = history == null ? null : history.rate(from, to);
+        if (rate == null) {
+            log.debug("No FX snapshot for {} {}->{}, using the live rate", date, from, to);
+            return convert(amt, from, to);
+        }
+        return amt.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+    }
+
     public BigDecimal getRate(Currency from, Currency to) {
-        if (from == to) return BigDecimal.ONE;
+        BigDecimal rate = table.get().rate(from, to);
+        if (rate != null) return rate;
 
         String hKey = "fx:" + from;
         String field = to.name();
 
         String cached = (String) redis.opsForHash().get(hKey, field);
-        if (cached != null) return new BigDecimal(cached);
-
-        BigDecimal fresh = fetcher.fetch(from, to);
-        redis.opsForHash().put(hKey, field, fresh.toPlainString());
-        redis.expire(hKey, Duration.ofSeconds(TTL_SECONDS));
+        BigDecimal fresh;
+        if (cached != null) {
+            fresh = new BigDecimal(cached);
+        } else {
+            fresh = fetcher.fetch(from, to);
+            redis.opsForHash().put(hKey, field, fresh.toPlainString());
+            redis.expire(hKey, Duration.ofSeconds(TTL_SECONDS));
+        }
+        table.updateAndGet(current -> current.with(from, to, fresh));
         return fresh;
     }
-}
 
+    public FxRateTable currentTable() {
+        return table.get();
+    }
+
+    /**
+     * Swaps in a freshly built table and shares it with other nodes through the fx:* hashes,
+     * written in a single pipelined round-trip together with the time of the fetch.
+     */
+    public void publish(FxRateTable fresh) {
+        long fetchedAt = System.currentTimeMillis();
+        table.set(fresh);
+        tableFetchedAt.set(fetchedAt);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Currency base : Currency.values()) {
+                Map<String, String> fields = new HashMap<>();
+                for (Currency target : Currency.values()) {
+                    BigDecimal rate = fresh.rate(base, target);
+                    if (base == target || rate == null) continue;
+                    fields.put(target.name(), rate.toPlainString());
+                }
+                if (fields.isEmpty()) continue;
+                String hashKey = "fx:" + base;
+                conn.hMSet(hashKey, fields);
+                conn.expire(hashKey, TTL_SECONDS);
+            }
+            conn.setEx(FETCHED_AT_KEY, TTL_SECONDS, Long.toString(fetchedAt));
+            return null;
+        });
+    }
+
+    /**
+     * Adopts the table another node has published, if one is there in full, was fetched after the
+     * local table and is younger than maxAge. A node never re-adopts its own snapshot, so every
+     * refresh interval at least one node goes back to the provider.
+     */
+    public boolean adoptSharedTable(Duration maxAge) {
+        String stamp = redis.opsForValue().get(FETCHED_AT_KEY);
+        if (stamp == null) return false;
+        long fetchedAt = Long.parseLong(stamp);
+        if (fetchedAt <= tableFetchedAt.get() || System.currentTimeMillis() - fetchedAt >= maxAge.toMillis()) {
+            return false;
+        }
+
+        FxRateTable.Builder builder = FxRateTable.builder();
+        for (Currency base : Currency.values()) {
+            Map<Object, Object> entries = redis.opsForHash().entries("fx:" + base);
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                try {
+                    builder.put(base, Currency.valueOf((String) entry.getKey()), new BigDecimal((String) entry.getValue()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping unknown shared FX entry {}:{}", base, entry.getKey());
+                }
+            }
+        }
+        FxRateTable shared = builder.build();
+        if (!shared.isComplete()) return false;
+        table.set(shared);
+        tableFetchedAt.set(fetchedAt);
+        return true;
+    }
+
+    /**
+     * Records today's base vector unless the day already has one. Every node calls this after each
+     * refresh, fetched or adopted; the primary key on the date lets exactly one of them write the day.
+     */
+    @Transactional
+    public void recordDailySnapshot(FxRateTable fresh, Currency base) {
+        LocalDate today = LocalDate.now();
+        if (today.equals(snapshotRecordedFor.get())) return;
+
+        StringJoiner packed = new StringJoiner(",");
+        for (Currency target : Currency.values()) {
+            BigDecimal rate = fresh.rate(base, target);
+            if (rate != null) packed.add(target.name() + ":" + rate.toPlainString());
+        }
+        int inserted = fxRateSnapshotRepository.insertIfAbsent(today, base.name(), packed.toString(), LocalDateTime.now());
+        snapshotRecordedFor.set(today);
+        if (inserted > 0) {
+            log.info("FX snapshot recorded for {}", today);
+        } else {
+            log.debug("FX snapshot for {} was already recorded", today);
+        }
+    }
+
+    private FxRateTable loadHistoricalTable(LocalDate date) {
+        return fxRateSnapshotRepository.findTopByRateDateLessThanEqualOrderByRateDateDesc(date)
+                .map(snapshot -> FxRateTable.fromBaseVector(unpack(snapshot.getRates())))
+                .orElse(null);
+    }
+
+    private static Map<Currency, BigDecimal> unpack(String packed) {
+        Map<Currency, BigDecimal> unitsPerBase = new EnumMap<>(Currency.class);
+        for (String entry : packed.split(",")) {
+            int separator = entry.indexOf(':');
+            try {
+                unitsPerBase.put(Currency.valueOf(entry.substring(0, separator)), new BigDecimal(entry.substring(separator + 1)));
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping unknown FX snapshot entry {}", entry);
+            }
+        }
+        return unitsPerBase;
+    }
+}
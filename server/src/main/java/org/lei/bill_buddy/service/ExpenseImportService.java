@@ -0,0 +1,369 @@
+package org.lei.bill_buddy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.ExpenseImportResultDTO;
+import org.lei.bill_buddy.DTO.ExpenseImportRowDTO;
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.*;
+import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.model.Group;
+import org.lei.bill_buddy.model.Money;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.repository.ExpenseRepository;
+import org.lei.bill_buddy.util.SplitAllocator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Bulk import of historical expenses. Rows are parsed as the body streams in and written in JDBC
+ * batches; debt deltas are netted per pair in memory and applied once, with one settle check at the end.
+ * Any invalid row rolls back the whole import.
+ */
+@Slf4j
+@Service
+public class ExpenseImportService {
+    private static final String INSERT_EXPENSE_SQL = """
+            INSERT INTO expenses (title, group_id, payer_id, amount, type, settled, deleted, description, expense_date, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, false, false, ?, ?, ?, ?)
+            """;
+    private static final String INSERT_SHARE_SQL = """
+            INSERT INTO expense_shares (expense_id, user_id, deleted, share_amount)
+            VALUES (?, ?, false, ?)
+            """;
+    private static final List<String> CSV_COLUMNS = List.of(
+            "title", "amount", "currency", "payerId", "participants", "shares", "expenseDate", "type", "description");
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format fromContentType(String contentType) {
+            if (contentType != null && contentType.startsWith("text/csv")) return CSV;
+            if (contentType != null && contentType.startsWith("application/x-ndjson")) return NDJSON;
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Content type must be text/csv or application/x-ndjson.");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final GroupService groupService;
+    private final UserService userService;
+    private final GroupDebtService groupDebtService;
+    private final ExchangeRateService exchangeRateService;
+    private final ActivityService activityService;
+    private final ExpenseRepository expenseRepository;
+    private final int batchSize;
+    private final int maxRows;
+
+    public ExpenseImportService(JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                GroupService groupService,
+                                UserService userService,
+                                GroupDebtService groupDebtService,
+                                ExchangeRateService exchangeRateService,
+                                ActivityService activityService,
+                                ExpenseRepository expenseRepository,
+                                @Value("${expense.import.batch-size:500}") int batchSize,
+                                @Value("${expense.import.max-rows:10000}") int maxRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.groupService = groupService;
+        this.userService = userService;
+        this.groupDebtService = groupDebtService;
+        this.exchangeRateService = exchangeRateService;
+        this.activityService = activityService;
+        this.expenseRepository = expenseRepository;
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+    }
+
+    @Transactional
+    public ExpenseImportResultDTO importExpenses(Long groupId, InputStream body, Format format) throws IOException {
+        Group group = groupService.getGroupById(groupId);
+        if (group == null) throw new AppException(ErrorCode.GROUP_NOT_FOUND);
+        Map<Long, User> members = userService.getUsersMapByIds(groupService.getAllMemberIdsOfGroup(groupId));
+
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
+        List<PendingExpense> batch = new ArrayList<>(batchSize);
+        int imported = 0;
+        int lineNumber = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Map<String, Integer> csvHeader = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            if (format == Format.CSV && csvHeader == null) {
+                csvHeader = parseCsvHeader(line);
+                continue;
+            }
+            if (imported + batch.size() >= maxRows) {
+                throw new AppException(ErrorCode.INVALID_INPUT, "An import may contain at most " + maxRows + " expenses.");
+            }
+
+            ExpenseImportRowDTO row = format == Format.CSV ? parseCsvRow(line, csvHeader, lineNumber) : parseJsonRow(line, lineNumber);
+            batch.add(prepare(row, group, members, deltas, lineNumber));
+            if (batch.size() >= batchSize) {
+                imported += flush(batch, groupId);
+            }
+        }
+        imported += flush(batch, groupId);
+        if (imported == 0) throw new AppException(ErrorCode.INVALID_INPUT, "No expenses to import.");
+
+        if (groupDebtService.applyDebtDeltas(group, deltas)) {
+            expenseRepository.settleExpensesByGroupId(groupId);
+        }
+        groupService.groupUpdated(groupId);
+
+        activityService.log(
+                ActionType.CREATE,
+                ObjectType.GROUP,
+                groupId,
+                "user_imported_expenses_to_group",
+                Map.of(
+                        "userId", userService.getCurrentUser().getId().toString(),
+                        "groupId", groupId.toString(),
+                        "count", String.valueOf(imported)
+                )
+        );
+        log.info("Imported {} expenses into group {}", imported, groupId);
+        return new ExpenseImportResultDTO(groupId, imported);
+    }
+
+    private PendingExpense prepare(ExpenseImportRowDTO row, Group group, Map<Long, User> members,
+                                   GroupDebtService.DebtDeltas deltas, int lineNumber) {
+        if (row.getTitle() == null || row.getTitle().isBlank()) throw invalid(lineNumber, "title is required");
+        if (row.getAmount() == null || row.getAmount().signum() <= 0) throw invalid(lineNumber, "amount must be greater than 0");
+        if (row.getParticipants() == null || row.getParticipants().isEmpty()) throw invalid(lineNumber, "participants are required");
+
+        User payer = members.get(row.getPayerId());
+        if (payer == null) throw invalid(lineNumber, "payer is not a member of this group");
+        int n = row.getParticipants().size();
+        User[] participants = new User[n];
+        for (int i = 0; i < n; i++) {
+            participants[i] = members.get(row.getParticipants().get(i));
+            if (participants[i] == null) throw invalid(lineNumber, "participant " + row.getParticipants().get(i) + " is not a member of this group");
+        }
+
+        LocalDateTime expenseDate = parseDate(row.getExpenseDate(), lineNumber);
+        Currency currency = parseCurrency(row.getCurrency(), group.getDefaultCurrency(), lineNumber);
+        LocalDate rateDate = expenseDate.toLocalDate();
+
+        long[] shareCents = new long[n];
+        long totalCents = Money.toCents(exchangeRateService.convertAt(row.getAmount(), currency, group.getDefaultCurrency(), rateDate));
+        if (row.getShares() != null && !row.getShares().isEmpty()) {
+            if (row.getShares().size() != n) throw invalid(lineNumber, "shares must match participants");
+            long[] given = new long[n];
+            long givenTotal = 0;
+            for (int i = 0; i < n; i++) {
+                BigDecimal share = row.getShares().get(i);
+                if (share.signum() < 0) throw invalid(lineNumber, "shares must not be negative");
+                given[i] = Money.toCents(share);
+                givenTotal += given[i];
+            }
+            if (givenTotal != Money.toCents(row.getAmount())) throw invalid(lineNumber, "shares must add up to the amount");
+            // Split the converted total in proportion to the given shares so the converted shares still add up.
+            SplitAllocator.weighted(totalCents, given, shareCents);
+        } else {
+            SplitAllocator.equal(totalCents, shareCents);
+        }
+
+        for (int i = 0; i < n; i++) {
+            deltas.add(payer, participants[i], shareCents[i]);
+        }
+        return new PendingExpense(row.getTitle(), payer.getId(), totalCents, parseType(row.getType()),
+                row.getDescription(), expenseDate, participants, shareCents);
+    }
+
+    private int flush(List<PendingExpense> batch, Long groupId) {
+        if (batch.isEmpty()) return 0;
+        long[] ids = insertExpenses(batch, groupId);
+
+        List<Object[]> shareRows = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingExpense expense = batch.get(i);
+            for (int j = 0; j < expense.participants().length; j++) {
+                shareRows.add(new Object[]{ids[i], expense.participants()[j].getId(), BigDecimal.valueOf(expense.shareCents()[j], 2)});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_SHARE_SQL, shareRows);
+
+        int written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    private long[] insertExpenses(List<PendingExpense> batch, Long groupId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_EXPENSE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PendingExpense e : batch) {
+                    ps.setString(1, e.title());
+                    ps.setLong(2, groupId);
+                    ps.setLong(3, e.payerId());
+                    ps.setBigDecimal(4, BigDecimal.valueOf(e.amountCents(), 2));
+                    ps.setString(5, e.type().name());
+                    ps.setString(6, e.description());
+                    ps.setTimestamp(7, Timestamp.valueOf(e.expenseDate()));
+                    ps.setTimestamp(8, now);
+                    ps.setTimestamp(9, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                long[] ids = new long[batch.size()];
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < ids.length) ids[i++] = keys.getLong(1);
+                    if (i != ids.length) throw new IllegalStateException("Expected " + ids.length + " generated keys, got " + i);
+                }
+                return ids;
+            }
+        });
+    }
+
+    private Map<String, Integer> parseCsvHeader(String line) {
+        List<String> names = splitCsvLine(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) header.put(names.get(i).trim(), i);
+        for (String required : List.of("title", "amount", "payerId", "participants")) {
+            if (!header.containsKey(required)) {
+                throw new AppException(ErrorCode.INVALID_INPUT, "CSV header must include " + required + "; known columns: " + CSV_COLUMNS);
+            }
+        }
+        return header;
+    }
+
+    private ExpenseImportRowDTO parseCsvRow(String line, Map<String, Integer> header, int lineNumber) {
+        List<String> cells = splitCsvLine(line);
+        try {
+            ExpenseImportRowDTO row = new ExpenseImportRowDTO();
+            row.setTitle(cell(cells, header, "title"));
+            row.setType(cell(cells, header, "type"));
+            row.setDescription(cell(cells, header, "description"));
+            String amount = cell(cells, header, "amount");
+            row.setAmount(amount == null ? null : new BigDecimal(amount));
+            row.setCurrency(cell(cells, header, "currency"));
+            String payerId = cell(cells, header, "payerId");
+            row.setPayerId(payerId == null ? null : Long.valueOf(payerId));
+            row.setExpenseDate(cell(cells, header, "expenseDate"));
+            List<Long> participants = new ArrayList<>();
+            for (String id : splitList(cell(cells, header, "participants"))) participants.add(Long.valueOf(id));
+            row.setParticipants(participants);
+            List<BigDecimal> shares = new ArrayList<>();
+            for (String share : splitList(cell(cells, header, "shares"))) shares.add(new BigDecimal(share));
+            row.setShares(shares);
+            return row;
+        } catch (NumberFormatException e) {
+            throw invalid(lineNumber, "malformed number");
+        }
+    }
+
+    private ExpenseImportRowDTO parseJsonRow(String line, int lineNumber) {
+        try {
+            return objectMapper.readValue(line, ExpenseImportRowDTO.class);
+        } catch (IOException e) {
+            throw invalid(lineNumber, "malformed JSON");
+        }
+    }
+
+    private static String cell(List<String> cells, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= cells.size()) return null;
+        String value = cells.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static List<String> splitList(String value) {
+        if (value == null) return List.of();
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(";")) {
+            if (!item.isBlank()) items.add(item.trim());
+        }
+        return items;
+    }
+
+    // RFC 4180 quoting within a single line; quoted fields may not span lines.
+    private static List<String> splitCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        cells.add(current.toString());
+        return cells;
+    }
+
+    private static LocalDateTime parseDate(String value, int lineNumber) {
+        if (value == null || value.isBlank()) throw invalid(lineNumber, "expenseDate is required");
+        try {
+            return value.length() <= 10 ? LocalDate.parse(value).atTime(LocalTime.NOON) : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw invalid(lineNumber, "expenseDate must be yyyy-MM-dd or an ISO date-time");
+        }
+    }
+
+    private static Currency parseCurrency(String value, Currency groupCurrency, int lineNumber) {
+        if (value == null || value.isBlank()) return groupCurrency;
+        try {
+            return Currency.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw invalid(lineNumber, "unsupported currency " + value);
+        }
+    }
+
+    private static ExpenseType parseType(String value) {
+        if (value == null || value.isBlank()) return ExpenseType.OTHER;
+        try {
+            ExpenseType type = ExpenseType.valueOf(value.trim().toUpperCase());
+            return type == ExpenseType.SETTLE_UP ? ExpenseType.OTHER : type;
+        } catch (IllegalArgumentException e) {
+            return ExpenseType.OTHER;
+        }
+    }
+
+    private static AppException invalid(int lineNumber, String message) {
+        return new AppException(ErrorCode.INVALID_INPUT, "Line " + lineNumber + ": " + message);
+    }
+
+    private record PendingExpense(String title, Long payerId, long amountCents, ExpenseType type, String description,
+                                  LocalDateTime expenseDate, User[] participants, long[] shareCents) {
+    }
+}
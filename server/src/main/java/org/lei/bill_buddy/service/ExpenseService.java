@@ -8,14 +8,22 @@ import org.lei.bill_buddy.enums.*;
 import org.lei.bill_buddy.enums.Currency;
 import org.lei.bill_buddy.model.*;
 import org.lei.bill_buddy.repository.*;
+import org.lei.bill_buddy.util.EntityGenerations;
+import org.lei.bill_buddy.util.KeysetCursor;
+import org.lei.bill_buddy.util.SplitAllocator;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.YearMonth;
@@ -35,6 +43,7 @@ public class ExpenseService {
     private final GroupDebtService groupDebtService;
     private final ExchangeRateService exchangeRateService;
     private final ActivityService activityService;
+    private final EntityGenerations entityGenerations;
 
     private static final BigDecimal EPS = new BigDecimal("0.01");
 
@@ -75,7 +84,7 @@ public class ExpenseService {
         ExpenseType type = parseExpenseType(typeStr);
 
         Currency groupCurrency = group.getDefaultCurrency();
-        BigDecimal finalAmount = exchangeRateService.convert(amount, parseCurrency(currency), group.getDefaultCurrency());
+        BigDecimal finalAmount = exchangeRateService.convertAt(amount, parseCurrency(currency), group.getDefaultCurrency(), rateDateOf(expenseDate));
 
         log.info("Creating expense: groupId={}, payerId={}, amount={}, currency={}", groupId, payerId, finalAmount, groupCurrency);
         log.debug("Full expense creation details: title={}, type={}, desc={}, date={}, recurring={}, participants={}",
@@ -111,7 +120,9 @@ public class ExpenseService {
             recurringExpenseRepository.save(recurringExpense);
         }
         Expense savedExpense = expenseRepository.save(expense);
-        distributeShares(savedExpense, participantIds, shareAmounts, finalAmount);
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
+        distributeShares(savedExpense, participantIds, shareAmounts, finalAmount, deltas);
+        boolean groupSettled = groupDebtService.applyDebtDeltas(group, deltas);
 
         Map<String, Object> params = new HashMap<>();
         params.put("userId", userService.getCurrentUser().getId().toString());
@@ -127,7 +138,7 @@ public class ExpenseService {
         );
 
         groupService.groupUpdated(groupId);
-        settleGroupIfNeeded(savedExpense.getGroup().getId());
+        if (groupSettled) settleGroupExpenses(groupId);
 
         log.info("Expense created successfully: id={}", savedExpense.getId());
         return savedExpense;
@@ -165,7 +176,9 @@ public class ExpenseService {
         expense.setAmount(paid);
         expense.setExpenseDate(LocalDateTime.now());
         Expense saved = expenseRepository.save(expense);
-        distributeShares(expense, List.of(to), List.of(paid), paid);
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
+        distributeShares(expense, List.of(to), List.of(paid), paid, deltas);
+        boolean groupSettled = groupDebtService.applyDebtDeltas(group, deltas);
         String amountStr = groupCurrency.equals(currency) ?
                 String.format("%s %.2f", groupCurrency, paid) :
                 String.format("%s %.2f(%s %.2f)", currency, pay, groupCurrency, paid);
@@ -182,7 +195,7 @@ public class ExpenseService {
                 )
         );
         groupService.groupUpdated(groupId);
-        settleGroupIfNeeded(groupId);
+        if (groupSettled) settleGroupExpenses(groupId);
     }
 
     @Transactional
@@ -195,21 +208,16 @@ public class ExpenseService {
             throw new AppException(ErrorCode.FORBIDDEN, "You do not have permission to delete this expense");
         }
         expenseRepository.softDeleteById(expenseId);
+        entityGenerations.invalidate(EntityGenerations.EXPENSE, expenseId);
 
         List<ExpenseShare> shares = expenseShareRepository.findByExpenseIdAndDeletedFalse(expenseId);
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
         for (ExpenseShare share : shares) {
             share.setDeleted(true);
-            expenseShareRepository.save(share);
-
-            if (!share.getUser().getId().equals(expense.getPayer().getId())) {
-                groupDebtService.updateGroupDebt(
-                        expense.getPayer(),
-                        share.getUser(),
-                        expense.getGroup(),
-                        share.getShareAmount().negate()
-                );
-            }
+            deltas.add(expense.getPayer(), share.getUser(), share.getShareAmount().negate());
         }
+        expenseShareRepository.saveAll(shares);
+        boolean groupSettled = groupDebtService.applyDebtDeltas(expense.getGroup(), deltas);
 
         Map<String, Object> params = new HashMap<>();
         params.put("userId", userService.getCurrentUser().getId().toString());
@@ -225,7 +233,7 @@ public class ExpenseService {
         );
 
         groupService.groupUpdated(expense.getGroup().getId());
-        settleGroupIfNeeded(expense.getGroup().getId());
+        if (groupSettled) settleGroupExpenses(expense.getGroup().getId());
         log.info("Expense deleted successfully: id={}", expenseId);
     }
 
@@ -265,17 +273,20 @@ public class ExpenseService {
         boolean debtRelatedChanged =
                 pr.currencyChanged || pr.amountChanged || pr.sharesChanged() || pr.payerChanged;
 
+        boolean groupSettled = false;
         if (debtRelatedChanged) {
-            rewriteDebtsAndShares(expense, oldPayer, oldShares,
-                    pr.newPayer, pr.newParticipantIds, pr.newShareAmounts, pr.newAmount);
+            groupSettled = rewriteDebtsAndShares(expense, oldPayer, oldShares,
+                    pr.newParticipantIds, pr.newShareAmounts, pr.newAmount);
         } else {
             log.info("Expense debt unchanged; skip debt update.");
         }
 
         if (!changes.isEmpty()) {
             Expense saved = expenseRepository.save(expense);
+            entityGenerations.invalidate(EntityGenerations.EXPENSE, expenseId);
 
             logActivityAndRefreshGroup(saved, expense.getGroup().getId(), changes);
+            if (groupSettled) settleGroupExpenses(expense.getGroup().getId());
             log.info("Expense updated successfully: id={}", expenseId);
             return saved;
         }
@@ -299,6 +310,12 @@ public class ExpenseService {
         return expenseRepository.findById(id).orElse(null);
     }
 
+    public Map<Long, Expense> getExpensesMapByIdsIncludeDeleted(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        return expenseRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Expense::getId, e -> e));
+    }
+
     @Transactional(readOnly = true)
     public Page<Expense> getExpenses(
             Long groupId,
@@ -310,14 +327,52 @@ public class ExpenseService {
             Pageable pageable) {
         log.info("Querying expenses with filters: groupId={}, payerId={}, type={}, month={}, title={}",
                 groupId, payerId, type, month, title);
+        checkCanListExpenses(groupId);
+        return expenseRepository.findAll(buildExpenseSpec(groupId, title, payerId, type, month, settled), pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public Window<Expense> getExpensesAfter(
+            Long groupId,
+            String title,
+            Long payerId,
+            String type,
+            String month,
+            Boolean settled,
+            KeysetCursor after,
+            int size,
+            boolean ascending) {
+        log.info("Scrolling expenses with filters: groupId={}, payerId={}, type={}, month={}, title={}, after={}",
+                groupId, payerId, type, month, title, after);
+        checkCanListExpenses(groupId);
+
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = Sort.by(direction, "expenseDate").and(Sort.by(direction, "id"));
+        KeysetScrollPosition position = after == null
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(Map.of("expenseDate", after.timestamp(), "id", after.id()));
+
+        return expenseRepository.findBy(buildExpenseSpec(groupId, title, payerId, type, month, settled),
+                q -> q.project("payer", "group").sortBy(sort).limit(size).scroll(position));
+    }
+
+    private void checkCanListExpenses(Long groupId) {
         if (!groupService.isMemberOfGroup(userService.getCurrentUser().getId(), groupId)) {
             log.warn("User {} is not a member of group {} in getting expenses",
                     userService.getCurrentUser().getId(),
                     groupId);
             throw new AppException(ErrorCode.NOT_A_MEMBER);
         }
+    }
 
-        Specification<Expense> spec = (root, query, cb) -> {
+    private Specification<Expense> buildExpenseSpec(
+            Long groupId,
+            String title,
+            Long payerId,
+            String type,
+            String month,
+            Boolean settled) {
+        return (root, query, cb) -> {
             List<jakarta.persistence.criteria.Predicate> predicates = new ArrayList<>();
 
             predicates.add(cb.isFalse(root.get("deleted")));
@@ -352,8 +407,6 @@ public class ExpenseService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return expenseRepository.findAll(spec, pageable);
     }
 
     public boolean hasActiveExpensesInGroup(Long userId, Long groupId) {
@@ -363,35 +416,36 @@ public class ExpenseService {
     }
 
     private void distributeShares(Expense expense, List<Long> participantIds,
-                                  List<BigDecimal> shareAmounts, BigDecimal totalAmount) {
+                                  List<BigDecimal> shareAmounts, BigDecimal totalAmount,
+                                  GroupDebtService.DebtDeltas deltas) {
         log.info("Distributing shares for expense id={}", expense.getId());
-        BigDecimal finalAmount = BigDecimal.ZERO;
         Map<Long, User> participants = userService.getUsersByIds(participantIds)
                 .stream()
                 .collect(Collectors.toMap(User::getId, user -> user));
 
         List<ExpenseShare> sharesToSave = new ArrayList<>();
 
+        long[] shareCents = new long[participantIds.size()];
         if (shareAmounts == null || shareAmounts.size() != participantIds.size()) {
-            BigDecimal averageShare = totalAmount.divide(BigDecimal.valueOf(participants.size()), 2, RoundingMode.HALF_UP);
-            for (Long userId : participantIds) {
-                ExpenseShare share = buildExpenseShare(expense, participants.get(userId), averageShare);
-                sharesToSave.add(share);
-            }
+            SplitAllocator.equal(Money.toCents(totalAmount), shareCents);
         } else {
-            for (int i = 0; i < participantIds.size(); i++) {
-                ExpenseShare share = buildExpenseShare(expense, participants.get(participantIds.get(i)), shareAmounts.get(i));
-                sharesToSave.add(share);
-                finalAmount = finalAmount.add(share.getShareAmount());
+            long[] requested = new long[shareAmounts.size()];
+            for (int i = 0; i < requested.length; i++) {
+                BigDecimal amount = shareAmounts.get(i);
+                if (amount == null) throw new AppException(ErrorCode.INVALID_INPUT, "Share amounts must not be empty.");
+                requested[i] = Money.toCents(amount);
             }
+            SplitAllocator.exact(Money.toCents(totalAmount), requested, shareCents);
+        }
+        for (int i = 0; i < participantIds.size(); i++) {
+            ExpenseShare share = buildExpenseShare(expense, participants.get(participantIds.get(i)), BigDecimal.valueOf(shareCents[i], 2));
+            sharesToSave.add(share);
         }
 
         expenseShareRepository.saveAll(sharesToSave);
 
         for (ExpenseShare share : sharesToSave) {
-            if (!share.getUser().getId().equals(expense.getPayer().getId())) {
-                groupDebtService.updateGroupDebt(expense.getPayer(), share.getUser(), expense.getGroup(), share.getShareAmount());
-            }
+            deltas.add(expense.getPayer(), share.getUser(), share.getShareAmount());
         }
     }
 
@@ -399,12 +453,20 @@ public class ExpenseService {
         return expenseShareRepository.findByExpenseIdAndDeletedFalse(expenseId);
     }
 
-    @Transactional
-    protected void settleGroupIfNeeded(Long groupId) {
-        if (groupDebtService.isGroupSettled(groupId)) {
-            log.info("Group {} is fully settled. Marking all related expenses as settled.", groupId);
-            expenseRepository.settleExpensesByGroupId(groupId);
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> getShareAmountsOfUser(Collection<Long> expenseIds, Long userId) {
+        if (expenseIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, BigDecimal> shareAmounts = new HashMap<>();
+        for (ExpenseShareRepository.ShareAmountView view : expenseShareRepository.findShareAmountsByExpenseIdInAndUserId(expenseIds, userId)) {
+            shareAmounts.put(view.getExpenseId(), view.getShareAmount());
         }
+        return shareAmounts;
+    }
+
+    // Only called when a debt batch took the group's unsettled pair count to zero, not on every write to a settled group.
+    private void settleGroupExpenses(Long groupId) {
+        log.info("Group {} is fully settled. Marking all related expenses as settled.", groupId);
+        expenseRepository.settleExpensesByGroupId(groupId);
     }
 
     private ExpenseShare buildExpenseShare(Expense expense, User user, BigDecimal shareAmount) {
@@ -563,6 +625,7 @@ public class ExpenseService {
         }
 
         BigDecimal initialAmount = BigDecimal.ZERO;
+        LocalDate rateDate = rateDateOf(expenseDate != null ? expenseDate : expense.getExpenseDate());
 
         List<Long> newParticipantIds = (participantIds != null) ? participantIds :
                 oldShares.stream().map(s -> s.getUser().getId()).toList();
@@ -574,7 +637,7 @@ public class ExpenseService {
             if (currencyChanged) {
                 BigDecimal sumBase = BigDecimal.ZERO;
                 for (int i = 0; i < newShareAmounts.size(); i++) {
-                    BigDecimal shareBase = exchangeRateService.convert(newShareAmounts.get(i), newCur, baseCur);
+                    BigDecimal shareBase = exchangeRateService.convertAt(newShareAmounts.get(i), newCur, baseCur, rateDate);
                     initialAmount = initialAmount.add(newShareAmounts.get(i));
                     sumBase = sumBase.add(shareBase);
                     newShareAmounts.set(i, shareBase);
@@ -585,7 +648,7 @@ public class ExpenseService {
             }
         } else if (currencyChanged) {
             initialAmount = newAmount;
-            newAmount = exchangeRateService.convert(newAmount, newCur, baseCur);
+            newAmount = exchangeRateService.convertAt(newAmount, newCur, baseCur, rateDate);
         }
 
         if (payerId != null) expense.setPayer(newPayer);
@@ -606,6 +669,10 @@ public class ExpenseService {
         );
     }
 
+    private static LocalDate rateDateOf(LocalDateTime expenseDate) {
+        return expenseDate == null ? null : expenseDate.toLocalDate();
+    }
+
     private record ParsedRequest(
             User newPayer, boolean payerChanged,
             List<Long> newParticipantIds,
@@ -659,23 +726,21 @@ public class ExpenseService {
         return changes;
     }
 
-    private void rewriteDebtsAndShares(Expense expense,
+    private boolean rewriteDebtsAndShares(Expense expense,
                                        User oldPayer,
                                        List<ExpenseShare> oldShares,
-                                       User newPayer,
                                        List<Long> newIds,
                                        List<BigDecimal> newAmounts,
                                        BigDecimal newTotal) {
 
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
         for (ExpenseShare s : oldShares) {
-            if (!s.getUser().getId().equals(newPayer.getId())) {
-                groupDebtService.updateGroupDebt(oldPayer, s.getUser(),
-                        expense.getGroup(), s.getShareAmount().negate());
-            }
+            deltas.add(oldPayer, s.getUser(), s.getShareAmount().negate());
         }
-        expenseShareRepository.deleteAll(oldShares);
+        expenseShareRepository.deleteAllInBatch(oldShares);
 
-        distributeShares(expense, newIds, newAmounts, newTotal);
+        distributeShares(expense, newIds, newAmounts, newTotal, deltas);
+        return groupDebtService.applyDebtDeltas(expense.getGroup(), deltas);
     }
 
     @Transactional
@@ -697,7 +762,6 @@ public class ExpenseService {
                 full);
 
         groupService.groupUpdated(groupId);
-        settleGroupIfNeeded(groupId);
     }
 
 }
@@ -6,15 +6,15 @@ import org.lei.bill_buddy.config.exception.AppException;
 import org.lei.bill_buddy.enums.ErrorCode;
 import org.lei.bill_buddy.model.Group;
 import org.lei.bill_buddy.model.GroupDebt;
+import org.lei.bill_buddy.model.Money;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.repository.GroupDebtRepository;
+import org.lei.bill_buddy.repository.GroupRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Service
 @Slf4j
@@ -22,134 +22,187 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class GroupDebtService {
     private final GroupDebtRepository groupDebtRepository;
-
-    public void addGroupDebt(User lender, User borrower, Group group) {
-        GroupDebt groupDebt = new GroupDebt();
-        groupDebt.setLender(lender);
-        groupDebt.setBorrower(borrower);
-        groupDebt.setGroup(group);
-        groupDebt.setAmount(BigDecimal.ZERO);
-        log.info("GroupDebt for lender {} and borrower{} created successfully", lender.getId(), borrower.getId());
-        groupDebtRepository.save(groupDebt);
-    }
+    private final GroupRepository groupRepository;
 
     public void addGroupDebts(Group group, User user, List<User> otherMembers) {
+        Map<Long, GroupDebt> existing = new HashMap<>();
+        for (GroupDebt gd : groupDebtRepository.findByGroupIdAndUserIdIncludeDeleted(group.getId(), user.getId())) {
+            existing.put(otherUserId(gd, user.getId()), gd);
+        }
+
+        List<GroupDebt> toSave = new ArrayList<>();
         for (User member : otherMembers) {
-            if (!user.getId().equals(member.getId())) {
-                addGroupDebt(member, user, group);
-                addGroupDebt(user, member, group);
+            if (user.getId().equals(member.getId())) continue;
+            GroupDebt gd = existing.get(member.getId());
+            if (gd == null) {
+                gd = new GroupDebt();
+                gd.setGroup(group);
+                gd.setMinUser(user.getId() < member.getId() ? user : member);
+                gd.setMaxUser(user.getId() < member.getId() ? member : user);
+            } else if (!gd.getDeleted()) {
+                continue;
             }
+            gd.setSignedAmount(Money.ZERO);
+            gd.setDeleted(false);
+            toSave.add(gd);
         }
+        groupDebtRepository.saveAll(toSave);
+        log.info("{} GroupDebt pairs for user {} in group {} created successfully", toSave.size(), user.getId(), group.getId());
+    }
+
+    /**
+     * Soft-deletes every ledger row of the member in the group. Bulk updates skip the per-row
+     * bookkeeping in {@link #applyDebtDeltas}, so the unsettled pair count is recounted instead.
+     */
+    public void removeMemberDebts(Long groupId, Long userId) {
+        groupDebtRepository.softDeleteByGroupIdAndUserIdAndDeletedFalse(groupId, userId);
+        groupRepository.recountUnsettledPairs(groupId);
+    }
+
+    public void removeGroupDebts(Long groupId) {
+        groupDebtRepository.softDeleteByGroupIdAndDeletedFalse(groupId);
+        groupRepository.recountUnsettledPairs(groupId);
     }
 
-    public void updateGroupDebt(User lender, User borrower, Group group, BigDecimal amount) {
-        if (lender.getId().equals(borrower.getId())) return;
-        GroupDebt gb = groupDebtRepository.findByGroupIdAndLenderIdAndBorrowerIdAndDeletedFalse(group.getId(), lender.getId(), borrower.getId())
-                .orElse(null);
-        if (gb == null) {
-            log.warn("GroupDebt not found");
-            throw new AppException(ErrorCode.NOT_A_MEMBER);
+    /**
+     * Applies the batch and keeps the group's unsettled pair count in step.
+     *
+     * @return whether this batch settled the group, moving the count from non-zero to zero
+     */
+    public boolean applyDebtDeltas(Group group, DebtDeltas deltas) {
+        if (deltas.isEmpty()) return false;
+        Map<PairKey, GroupDebt> rowsByPair = new HashMap<>();
+        for (GroupDebt row : groupDebtRepository.findByGroupIdAndMinUserIdInAndMaxUserIdInAndDeletedFalse(
+                group.getId(), deltas.minUserIds(), deltas.maxUserIds())) {
+            rowsByPair.put(new PairKey(row.getMinUser().getId(), row.getMaxUser().getId()), row);
         }
-        gb.setAmount(gb.getAmount().add(amount));
-        log.info("Lender {} borrowed borrower{} {} {}", lender.getId(), borrower.getId(), group.getDefaultCurrency(), amount);
-        groupDebtRepository.save(gb);
+
+        List<GroupDebt> changed = new ArrayList<>(deltas.cents.size());
+        int unsettledDelta = 0;
+        for (Map.Entry<PairKey, long[]> entry : deltas.cents.entrySet()) {
+            long delta = entry.getValue()[0];
+            if (delta == 0) continue;
+            GroupDebt gd = rowsByPair.get(entry.getKey());
+            if (gd == null) {
+                log.warn("GroupDebt not found for users {} and {}", entry.getKey().minUserId(), entry.getKey().maxUserId());
+                throw new AppException(ErrorCode.NOT_A_MEMBER);
+            }
+            boolean wasSettled = gd.getSignedAmount().isZero();
+            gd.setSignedAmount(gd.getSignedAmount().plus(delta));
+            boolean isSettled = gd.getSignedAmount().isZero();
+            if (wasSettled && !isSettled) unsettledDelta++;
+            else if (!wasSettled && isSettled) unsettledDelta--;
+            changed.add(gd);
+        }
+        groupDebtRepository.saveAll(changed);
+
+        if (unsettledDelta != 0) {
+            groupRepository.adjustUnsettledPairs(group.getId(), unsettledDelta);
+        }
+        log.info("Applied {} debt deltas in group {}, unsettled pairs changed by {}", changed.size(), group.getId(), unsettledDelta);
+        if (unsettledDelta >= 0) return false;
+        // Read after our own adjustment, which holds the row lock, so concurrent batches cannot both see the drop to zero.
+        Integer unsettledPairs = groupRepository.findUnsettledPairsById(group.getId());
+        return unsettledPairs != null && unsettledPairs <= 0;
     }
 
     public Map<Long, BigDecimal> getUserDebtsOfGroup(Long userId, Long groupId) {
-        List<GroupDebt> userBorrowed = groupDebtRepository.findByGroupIdAndBorrowerIdAndDeletedFalse(groupId, userId);
-        List<GroupDebt> userLent = groupDebtRepository.findByGroupIdAndLenderIdAndDeletedFalse(groupId, userId);
-        return formatDebtsMap(userBorrowed, userLent);
+        Map<Long, BigDecimal> netDebts = new HashMap<>();
+        for (GroupDebt gd : groupDebtRepository.findByGroupIdAndUserIdAndDeletedFalse(groupId, userId)) {
+            netDebts.put(otherUserId(gd, userId), balanceOf(gd, userId));
+        }
+        return netDebts;
     }
 
     public Map<Long, BigDecimal> getDebtsBetweenUsersOfGroup(Long userAId, Long userBId, Long groupId) {
-        GroupDebt ALentB = groupDebtRepository.findByGroupIdAndLenderIdAndBorrowerIdAndDeletedFalse(groupId, userAId, userBId).orElseThrow(
-                () -> new AppException(ErrorCode.NOT_A_MEMBER)
-        );
-
-        GroupDebt BLentA = groupDebtRepository.findByGroupIdAndLenderIdAndBorrowerIdAndDeletedFalse(groupId, userBId, userAId).orElseThrow(
+        GroupDebt gd = groupDebtRepository.findByGroupIdAndMinUserIdAndMaxUserIdAndDeletedFalse(
+                groupId, Math.min(userAId, userBId), Math.max(userAId, userBId)).orElseThrow(
                 () -> new AppException(ErrorCode.NOT_A_MEMBER)
         );
         HashMap<Long, BigDecimal> netDebts = new HashMap<>();
-        netDebts.put(userAId, ALentB.getAmount().subtract(BLentA.getAmount()));
-        netDebts.put(userBId, BLentA.getAmount().subtract(ALentB.getAmount()));
+        netDebts.put(userAId, balanceOf(gd, userAId));
+        netDebts.put(userBId, balanceOf(gd, userBId));
         return netDebts;
     }
 
     public Map<Group, BigDecimal> getNetDebtsBetweenUsers(Long userAId, Long userBId) {
-        List<GroupDebt> aLentToB = groupDebtRepository
-                .findByLenderIdAndBorrowerIdAndDeletedFalse(userAId, userBId);
-
-        List<GroupDebt> bLentToA = groupDebtRepository
-                .findByLenderIdAndBorrowerIdAndDeletedFalse(userBId, userAId);
-
-        Map<Long, BigDecimal> groupIdToAmount = new HashMap<>();
-        Map<Long, Group> groupMap = new HashMap<>();
-
-        for (GroupDebt debt : aLentToB) {
-            Long groupId = debt.getGroup().getId();
-            groupIdToAmount.merge(groupId, debt.getAmount(), BigDecimal::add);
-            groupMap.putIfAbsent(groupId, debt.getGroup());
-        }
-
-        for (GroupDebt debt : bLentToA) {
-            Long groupId = debt.getGroup().getId();
-            groupIdToAmount.merge(groupId, debt.getAmount().negate(), BigDecimal::add);
-            groupMap.putIfAbsent(groupId, debt.getGroup());
-        }
+        List<GroupDebt> debts = groupDebtRepository.findByMinUserIdAndMaxUserIdAndDeletedFalse(
+                Math.min(userAId, userBId), Math.max(userAId, userBId));
 
         Map<Group, BigDecimal> result = new HashMap<>();
-        for (Map.Entry<Long, BigDecimal> entry : groupIdToAmount.entrySet()) {
-            BigDecimal amount = entry.getValue();
-            Group group = groupMap.get(entry.getKey());
-            result.put(group, amount);
+        for (GroupDebt gd : debts) {
+            result.put(gd.getGroup(), balanceOf(gd, userAId));
         }
         return result;
     }
 
     @Transactional(readOnly = true)
     public boolean isGroupSettled(Long groupId) {
-        List<GroupDebt> debts = groupDebtRepository.findByGroupIdAndDeletedFalse(groupId);
-
-        Map<String, BigDecimal> netDebts = new HashMap<>();
+        Integer unsettledPairs = groupRepository.findUnsettledPairsById(groupId);
+        return unsettledPairs == null || unsettledPairs <= 0;
+    }
 
-        for (GroupDebt debt : debts) {
-            Long lenderId = debt.getLender().getId();
-            Long borrowerId = debt.getBorrower().getId();
-            BigDecimal amount = debt.getAmount();
+    // Net amount the other user of the pair owes userId; negative when userId owes them.
+    private BigDecimal balanceOf(GroupDebt gd, Long userId) {
+        Money signed = gd.getSignedAmount();
+        return (gd.getMinUser().getId().equals(userId) ? signed : signed.negate()).toBigDecimal();
+    }
 
-            long min = Math.min(lenderId, borrowerId);
-            long max = Math.max(lenderId, borrowerId);
-            String key = min + "-" + max;
+    private Long otherUserId(GroupDebt gd, Long userId) {
+        return gd.getMinUser().getId().equals(userId) ? gd.getMaxUser().getId() : gd.getMinUser().getId();
+    }
 
-            BigDecimal signedAmount = lenderId < borrowerId ? amount : amount.negate();
+    /**
+     * Per-pair net deltas in cents, accumulated in place so a large batch allocates one slot per pair.
+     */
+    public static class DebtDeltas {
+        private final Map<PairKey, long[]> cents = new LinkedHashMap<>();
 
-            netDebts.merge(key, signedAmount, BigDecimal::add);
+        public void add(User lender, User borrower, BigDecimal amount) {
+            add(lender, borrower, Money.toCents(amount));
         }
 
-        return netDebts.values().stream().allMatch(val -> val.compareTo(BigDecimal.ZERO) == 0);
-    }
+        public void add(User lender, User borrower, long amountCents) {
+            Long lenderId = lender.getId();
+            Long borrowerId = borrower.getId();
+            if (lenderId.equals(borrowerId) || amountCents == 0) return;
+            if (lenderId < borrowerId) {
+                cents.computeIfAbsent(new PairKey(lenderId, borrowerId), k -> new long[1])[0] += amountCents;
+            } else {
+                cents.computeIfAbsent(new PairKey(borrowerId, lenderId), k -> new long[1])[0] -= amountCents;
+            }
+        }
 
-    private Map<Long, BigDecimal> formatDebtsMap(List<GroupDebt> userOwes, List<GroupDebt> owesUser) {
-        Map<Long, BigDecimal> netDebts = new HashMap<>();
+        public boolean isEmpty() {
+            return cents.isEmpty();
+        }
 
-        for (GroupDebt debt : userOwes) {
-            Long otherUserId = debt.getLender().getId();
-            netDebts.put(otherUserId, netDebts.getOrDefault(otherUserId, BigDecimal.ZERO).subtract(debt.getAmount()));
+        /**
+         * Net cents the borrower owes the lender across everything added so far.
+         */
+        long netCents(Long lenderId, Long borrowerId) {
+            if (lenderId < borrowerId) {
+                long[] net = cents.get(new PairKey(lenderId, borrowerId));
+                return net == null ? 0 : net[0];
+            }
+            long[] net = cents.get(new PairKey(borrowerId, lenderId));
+            return net == null ? 0 : -net[0];
         }
 
-        for (GroupDebt debt : owesUser) {
-            Long otherUserId = debt.getBorrower().getId();
-            netDebts.put(otherUserId, netDebts.getOrDefault(otherUserId, BigDecimal.ZERO).add(debt.getAmount()));
+        private Set<Long> minUserIds() {
+            Set<Long> ids = new HashSet<>();
+            cents.keySet().forEach(k -> ids.add(k.minUserId()));
+            return ids;
         }
-        return netDebts;
-    }
 
-    public List<GroupDebt> getByGroupAndLender(Group group, User lender) {
-        return groupDebtRepository.findByGroupIdAndLenderIdAndDeletedFalse(group.getId(), lender.getId());
+        private Set<Long> maxUserIds() {
+            Set<Long> ids = new HashSet<>();
+            cents.keySet().forEach(k -> ids.add(k.maxUserId()));
+            return ids;
+        }
     }
 
-    public List<GroupDebt> getByGroupAndBorrower(Group group, User borrower) {
-        return groupDebtRepository.findByGroupIdAndBorrowerIdAndDeletedFalse(group.getId(), borrower.getId());
+    private record PairKey(Long minUserId, Long maxUserId) {
     }
 
 }
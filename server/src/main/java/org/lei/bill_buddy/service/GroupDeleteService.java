@@ -3,9 +3,9 @@ package org.lei.bill_buddy.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.lei.bill_buddy.repository.ExpenseRepository;
-import org.lei.bill_buddy.repository.GroupDebtRepository;
 import org.lei.bill_buddy.repository.GroupMemberRepository;
 import org.lei.bill_buddy.repository.GroupRepository;
+import org.lei.bill_buddy.util.EntityGenerations;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,7 +17,9 @@ public class GroupDeleteService {
     private final GroupRepository groupRepository;
     private final GroupMemberRepository groupMemberRepository;
     private final ExpenseRepository expenseRepository;
-    private final GroupDebtRepository groupDebtRepository;
+    private final GroupDebtService groupDebtService;
+    private final GroupService groupService;
+    private final EntityGenerations entityGenerations;
 
     @Transactional
     public void deleteGroup(Long groupId) {
@@ -25,7 +27,9 @@ public class GroupDeleteService {
         groupMemberRepository.softDeleteAllByGroupId(groupId);
         groupRepository.softDeleteByGroupId(groupId);
         expenseRepository.softDeleteExpensesByGroupId(groupId);
-        groupDebtRepository.softDeleteByGroupIdAndDeletedFalse(groupId);
+        entityGenerations.invalidateAll(EntityGenerations.EXPENSE);
+        groupDebtService.removeGroupDebts(groupId);
+        groupService.evictGroup(groupId);
         log.info("Group {} marked as deleted.", groupId);
     }
 }
@@ -9,7 +9,6 @@ import org.lei.bill_buddy.enums.ObjectType;
 import org.lei.bill_buddy.model.Group;
 import org.lei.bill_buddy.model.GroupMember;
 import org.lei.bill_buddy.model.User;
-import org.lei.bill_buddy.repository.GroupDebtRepository;
 import org.lei.bill_buddy.repository.GroupMemberRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,7 +24,6 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class GroupMemberService {
     private final GroupMemberRepository groupMemberRepository;
-    private final GroupDebtRepository groupDebtRepository;
     private final UserService userService;
     private final GroupService groupService;
     private final GroupDebtService groupDebtService;
@@ -58,6 +56,7 @@ public class GroupMemberService {
         gm.setUser(user);
         gm.setJoinedAt(LocalDateTime.now());
         groupMemberRepository.save(gm);
+        groupService.evictMembersOfGroup(groupId);
 
         activityService.log(ActionType.UPDATE, ObjectType.GROUP, groupId, "user_joined_group", Map.of("groupId", groupId.toString(), "userId", userId.toString()));
 
@@ -86,8 +85,8 @@ public class GroupMemberService {
         }
         gm.setDeleted(true);
         groupMemberRepository.save(gm);
-        groupDebtRepository.softDeleteByGroupIdAndBorrowerIdAndDeletedFalse(groupId, userId);
-        groupDebtRepository.softDeleteByGroupIdAndLenderIdAndDeletedFalse(groupId, userId);
+        groupService.evictMembersOfGroup(groupId);
+        groupDebtService.removeMemberDebts(groupId, userId);
         Set<Long> memberIds = groupService.getAllMemberIdsOfGroup(groupId);
 
         if (memberIds == null || memberIds.isEmpty()) groupDeleteService.deleteGroup(groupId);
@@ -2,6 +2,8 @@ package org.lei.bill_buddy.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.GroupMemberIdsDTO;
+import org.lei.bill_buddy.DTO.GroupSnapshotDTO;
 import org.lei.bill_buddy.config.exception.AppException;
 import org.lei.bill_buddy.enums.*;
 import org.lei.bill_buddy.enums.Currency;
@@ -10,6 +12,7 @@ import org.lei.bill_buddy.model.GroupMember;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.repository.GroupMemberRepository;
 import org.lei.bill_buddy.repository.GroupRepository;
+import org.lei.bill_buddy.util.TwoLevelCache;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -17,6 +20,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Transactional
@@ -27,12 +32,13 @@ public class GroupService {
     private final GroupMemberRepository groupMemberRepository;
     private final ActivityService activityService;
     private final UserService userService;
+    private final TwoLevelCache<GroupSnapshotDTO> groupCache;
+    private final TwoLevelCache<GroupMemberIdsDTO> groupMembersCache;
 
+    // Only bumps the sort key for the group list; cached snapshots may carry an older updatedAt.
     public void groupUpdated(Long groupId) {
-        Group group = getGroupById(groupId);
-        group.setUpdatedAt(LocalDateTime.now());
-        groupRepository.save(group);
-        log.debug("Group updated: {}", group.getId());
+        groupRepository.touchUpdatedAt(groupId, LocalDateTime.now());
+        log.debug("Group updated: {}", groupId);
     }
 
     public Group createGroup(String groupName, String typeStr, String defaultCurrency, User creator) {
@@ -65,6 +71,7 @@ public class GroupService {
         gm.setUser(creator);
         gm.setJoinedAt(LocalDateTime.now());
         groupMemberRepository.save(gm);
+        groupMembersCache.evict(savedGroup.getId().toString());
 
         Map<String, Object> params = new HashMap<>();
         params.put("userId", creator.getId().toString());
@@ -84,8 +91,9 @@ public class GroupService {
 
     @Transactional(readOnly = true)
     public Group getGroupById(Long groupId) {
-        return groupRepository.findByIdAndDeletedFalse(groupId)
-                .orElse(null);
+        GroupSnapshotDTO snapshot = groupCache.get(groupId.toString(),
+                () -> groupRepository.findByIdAndDeletedFalse(groupId).map(GroupSnapshotDTO::from).orElse(null));
+        return snapshot == null ? null : snapshot.toEntity();
     }
 
     @Transactional(readOnly = true)
@@ -94,9 +102,15 @@ public class GroupService {
                 .orElse(null);
     }
 
+    public Map<Long, Group> getGroupsMapByIdsIncludeDeleted(Collection<Long> groupIds) {
+        if (groupIds == null || groupIds.isEmpty()) return Collections.emptyMap();
+        return groupRepository.findAllById(groupIds).stream()
+                .collect(Collectors.toMap(Group::getId, Function.identity()));
+    }
+
     public Group updateGroup(Long groupId, String newName, String newType) {
         log.info("Updating group {} with name: {}, type: {}", groupId, newName, newType);
-        Group group = getGroupById(groupId);
+        Group group = groupRepository.findByIdAndDeletedFalse(groupId).orElse(null);
         if (group == null) {
             log.warn("Cannot update group {} because it does not exist", groupId);
             throw new AppException(ErrorCode.GROUP_NOT_FOUND);
@@ -131,6 +145,7 @@ public class GroupService {
         }
 
         Group savedGroup = groupRepository.save(group);
+        groupCache.evict(groupId.toString());
 
         if (changed) {
             Map<String, Object> params = new HashMap<>();
@@ -168,10 +183,28 @@ public class GroupService {
     }
 
     public boolean isMemberOfGroup(Long userId, Long groupId) {
-        return groupMemberRepository.existsByUserIdAndGroupIdAndDeletedFalse(userId, groupId);
+        return memberIdsOf(groupId).contains(userId);
+    }
+
+    public Set<Long> getGroupIdsOfUser(Long userId) {
+        return new HashSet<>(groupMemberRepository.findGroupIdsByUserIdAndDeletedFalse(userId));
     }
 
     public Set<Long> getAllMemberIdsOfGroup(Long groupId) {
-        return new HashSet<>(groupMemberRepository.findUserIdsByGroupIdAndDeletedFalse(groupId));
+        return new HashSet<>(memberIdsOf(groupId));
+    }
+
+    public void evictGroup(Long groupId) {
+        groupCache.evict(groupId.toString());
+        groupMembersCache.evict(groupId.toString());
+    }
+
+    public void evictMembersOfGroup(Long groupId) {
+        groupMembersCache.evict(groupId.toString());
+    }
+
+    private Set<Long> memberIdsOf(Long groupId) {
+        return groupMembersCache.get(groupId.toString(), () -> new GroupMemberIdsDTO(groupId,
+                Set.copyOf(groupMemberRepository.findUserIdsByGroupIdAndDeletedFalse(groupId)))).memberIds();
     }
 }
@@ -0,0 +1,120 @@
+package org.lei.bill_buddy.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.model.GroupDebt;
+import org.lei.bill_buddy.repository.GroupDebtRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SettlementPlanService {
+    private final GroupDebtRepository groupDebtRepository;
+
+    @Transactional(readOnly = true)
+    public List<Transfer> planForGroup(Long groupId) {
+        Map<Long, Long> balanceByUser = new HashMap<>();
+        for (GroupDebt gd : groupDebtRepository.findByGroupIdAndDeletedFalse(groupId)) {
+            long cents = gd.getSignedAmount().cents();
+            if (cents == 0) continue;
+            balanceByUser.merge(gd.getMinUser().getId(), cents, Long::sum);
+            balanceByUser.merge(gd.getMaxUser().getId(), -cents, Long::sum);
+        }
+
+        int count = balanceByUser.size();
+        long[] userIds = new long[count];
+        long[] balances = new long[count];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : balanceByUser.entrySet()) {
+            userIds[i] = entry.getKey();
+            balances[i++] = entry.getValue();
+        }
+
+        List<Transfer> transfers = plan(userIds, balances);
+        log.debug("Settlement plan for group {}: {} members with balance, {} transfers", groupId, count, transfers.size());
+        return transfers;
+    }
+
+    /**
+     * Greedy minimum-transfer plan: repeatedly match the largest creditor with the largest debtor.
+     * balances[i] is user i's net position in cents, positive when others owe them; the array must sum to zero.
+     */
+    public static List<Transfer> plan(long[] userIds, long[] balances) {
+        int n = balances.length;
+        long[] remaining = new long[n];
+        MaxHeap creditors = new MaxHeap(remaining, n);
+        MaxHeap debtors = new MaxHeap(remaining, n);
+        for (int i = 0; i < n; i++) {
+            remaining[i] = Math.abs(balances[i]);
+            if (balances[i] > 0) creditors.push(i);
+            else if (balances[i] < 0) debtors.push(i);
+        }
+
+        List<Transfer> transfers = new ArrayList<>(Math.max(creditors.size, debtors.size));
+        while (creditors.size > 0 && debtors.size > 0) {
+            int c = creditors.pop();
+            int d = debtors.pop();
+            long amount = Math.min(remaining[c], remaining[d]);
+            transfers.add(new Transfer(userIds[d], userIds[c], amount));
+            remaining[c] -= amount;
+            remaining[d] -= amount;
+            if (remaining[c] > 0) creditors.push(c);
+            if (remaining[d] > 0) debtors.push(d);
+        }
+        return transfers;
+    }
+
+    public record Transfer(Long fromUserId, Long toUserId, long amountCents) {
+        public BigDecimal amount() {
+            return BigDecimal.valueOf(amountCents, 2);
+        }
+    }
+
+    private static final class MaxHeap {
+        private final long[] keys;
+        private final int[] heap;
+        private int size;
+
+        MaxHeap(long[] keys, int capacity) {
+            this.keys = keys;
+            this.heap = new int[capacity];
+        }
+
+        void push(int index) {
+            int i = size++;
+            heap[i] = index;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[heap[parent]] >= keys[heap[i]]) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        int pop() {
+            int top = heap[0];
+            heap[0] = heap[--size];
+            int i = 0;
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int largest = left + 1 < size && keys[heap[left + 1]] > keys[heap[left]] ? left + 1 : left;
+                if (keys[heap[i]] >= keys[heap[largest]]) break;
+                swap(i, largest);
+                i = largest;
+            }
+            return top;
+        }
+
+        private void swap(int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+}
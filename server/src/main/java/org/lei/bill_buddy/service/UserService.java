@@ -2,15 +2,22 @@ package org.lei.bill_buddy.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.UserSnapshotDTO;
 import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.config.web.AuthPrincipalCache;
+import org.lei.bill_buddy.config.web.UserPrincipal;
 import org.lei.bill_buddy.enums.ErrorCode;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.repository.UserRepository;
+import org.lei.bill_buddy.util.TwoLevelCache;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -18,6 +25,8 @@ import java.util.List;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AuthPrincipalCache authPrincipalCache;
+    private final TwoLevelCache<UserSnapshotDTO> userCache;
 
     public User addUser(User user) {
         log.info("Attempting to register user with email: {}", user.getEmail());
@@ -64,6 +73,8 @@ public class UserService {
         }
 
         User updatedUser = userRepository.save(existingUser);
+        authPrincipalCache.evictUser(updatedUser.getId());
+        userCache.evict(updatedUser.getId().toString());
         log.info("User updated successfully with id: {}", updatedUser.getId());
         return updatedUser;
     }
@@ -78,11 +89,25 @@ public class UserService {
         return userRepository.findByIdInAndDeletedFalse(ids);
     }
 
+    public Map<Long, User> getUsersMapByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        log.debug("Fetching users map by ids: {}", ids);
+        return userRepository.findByIdInAndDeletedFalse(new ArrayList<>(ids)).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    public Map<Long, User> getUsersMapByIdsIncludeDeleted(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Collections.emptyMap();
+        return userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
     public User getUserById(Long id) {
         log.debug("Fetching user by id: {}", id);
-        User user = userRepository.findByIdAndDeletedFalse(id).orElse(null);
-        if (user == null) log.warn("User not found for id: {}", id);
-        return user;
+        UserSnapshotDTO snapshot = userCache.get(id.toString(),
+                () -> userRepository.findByIdAndDeletedFalse(id).map(UserSnapshotDTO::from).orElse(null));
+        if (snapshot == null) log.warn("User not found for id: {}", id);
+        return snapshot == null ? null : snapshot.toEntity();
     }
 
     public User getUserByIdIncludeDeleted(Long id) {
@@ -97,8 +122,27 @@ public class UserService {
         return userRepository.findByEmailAndDeletedFalse(email).orElse(null);
     }
 
+    /**
+     * Checks a raw password against the stored hash, read from the database because the
+     * user returned by {@link #getCurrentUser()} carries no credentials.
+     */
+    public boolean passwordMatches(Long userId, String rawPassword) {
+        return userRepository.findById(userId)
+                .map(user -> passwordEncoder.matches(rawPassword, user.getPassword()))
+                .orElse(false);
+    }
+
+    /**
+     * Returns the authenticated user, taken from the principal without a query when possible.
+     * The entity is a detached copy that carries no credentials: its password is always null,
+     * so use {@link #passwordMatches} to check one.
+     */
     public User getCurrentUser() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getUser();
+        }
+        String email = authentication.getName();
         log.debug("Fetching current authenticated user by email: {}", email);
         return getUserByEmail(email);
     }
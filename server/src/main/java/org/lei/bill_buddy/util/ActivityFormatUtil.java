@@ -1,15 +1,20 @@
 package org.lei.bill_buddy.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.model.Activity;
 import org.lei.bill_buddy.model.Expense;
 import org.lei.bill_buddy.model.Group;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.service.ExpenseService;
 import org.lei.bill_buddy.service.GroupService;
 import org.lei.bill_buddy.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Type;
@@ -24,28 +29,102 @@ public class ActivityFormatUtil {
     private final UserService userService;
     private final ExpenseService expenseService;
     private final GroupService groupService;
+    private final EntityGenerations entityGenerations;
 
     private static final Gson GSON = new Gson();
     private static final Type PARAMS_MAP_TYPE = new TypeToken<Map<String, Object>>() {
     }.getType();
     private static final Type CHANGES_LIST_TYPE = new TypeToken<List<Map<String, String>>>() {
     }.getType();
+    private static final List<String> USER_PARAM_KEYS = List.of("userId", "inviterId", "inviteeId", "userAId", "userBId");
+
+    @Value("${activity.render-cache.max-size:10000}")
+    private long renderCacheMaxSize;
+
+    private Cache<Long, Rendered> renderCache;
+
+    @PostConstruct
+    public void init() {
+        this.renderCache = Caffeine.newBuilder()
+                .maximumSize(renderCacheMaxSize)
+                .build();
+    }
 
     public String formatActivityDescriptionAsHtml(String templateKey, String paramsJson) {
         Map<String, Object> params = GSON.fromJson(paramsJson, PARAMS_MAP_TYPE);
+        return render(templateKey, params, new Refs(new HashMap<>(), new HashMap<>(), new HashMap<>(), true));
+    }
 
+    /**
+     * Renders a page of activities with one batched lookup per entity type. A cached fragment is reused
+     * without touching the database while no user, group or expense it mentions has changed since it was
+     * rendered; only misses and stale fragments load their references.
+     */
+    public Map<Long, String> formatActivitiesAsHtml(List<Activity> activities) {
+        Map<Long, String> result = new HashMap<>();
+        Map<Long, Map<String, Object>> parsed = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> groupIds = new HashSet<>();
+        Set<Long> expenseIds = new HashSet<>();
+
+        for (Activity activity : activities) {
+            Rendered hit = renderCache.getIfPresent(activity.getId());
+            if (hit != null && entityGenerations.unchangedSince(hit.renderedAt(), hit.references())) {
+                result.put(activity.getId(), hit.html());
+                continue;
+            }
+            Map<String, Object> params = GSON.fromJson(activity.getParams(), PARAMS_MAP_TYPE);
+            parsed.put(activity.getId(), params);
+            collectReferences(params, userIds, groupIds, expenseIds);
+        }
+        if (parsed.isEmpty()) return result;
+
+        // Taken before loading, so a change committed while this page renders marks its fragments stale.
+        long renderedAt = entityGenerations.now();
+        Refs refs = new Refs(
+                new HashMap<>(userService.getUsersMapByIdsIncludeDeleted(userIds)),
+                new HashMap<>(groupService.getGroupsMapByIdsIncludeDeleted(groupIds)),
+                new HashMap<>(expenseService.getExpensesMapByIdsIncludeDeleted(expenseIds)),
+                false);
+
+        for (Activity activity : activities) {
+            Map<String, Object> params = parsed.get(activity.getId());
+            if (params == null) continue;
+
+            Set<Long> users = new HashSet<>();
+            Set<Long> groups = new HashSet<>();
+            Set<Long> expenses = new HashSet<>();
+            collectReferences(params, users, groups, expenses);
+
+            String html = render(activity.getTemplate(), params, refs);
+            renderCache.put(activity.getId(), new Rendered(html, references(users, groups, expenses), renderedAt));
+            result.put(activity.getId(), html);
+        }
+        return result;
+    }
+
+    private static List<String> references(Set<Long> userIds, Set<Long> groupIds, Set<Long> expenseIds) {
+        List<String> keys = new ArrayList<>(userIds.size() + groupIds.size() + expenseIds.size());
+        userIds.forEach(id -> keys.add(EntityGenerations.key(EntityGenerations.USER, id)));
+        groupIds.forEach(id -> keys.add(EntityGenerations.key(EntityGenerations.GROUP, id)));
+        expenseIds.forEach(id -> keys.add(EntityGenerations.key(EntityGenerations.EXPENSE, id)));
+        return keys;
+    }
+
+    private String render(String templateKey, Map<String, Object> params, Refs refs) {
         try {
             return switch (templateKey) {
-                case "user_created_group" -> formatUserCreatedGroup(params);
-                case "user_deleted_group" -> formatUserDeletedGroup(params);
-                case "user_updated_group" -> formatUserUpdatedGroup(params);
-                case "user_invited_user_to_group" -> formatUserInvitedUserToGroup(params);
-                case "user_joined_group" -> formatUserJoinedGroup(params);
-                case "user_leaved_group" -> formatUserLeavedGroup(params);
-                case "user_added_expense_to_group" -> formatUserAddedExpense(params);
-                case "user_settled_to_user_in_group" -> formatUserSettledToUserInGroup(params);
-                case "user_updated_expense" -> formatUserUpdatedExpense(params);
-                case "user_deleted_expense" -> formatUserDeletedExpense(params);
+                case "user_created_group" -> formatUserCreatedGroup(params, refs);
+                case "user_deleted_group" -> formatUserDeletedGroup(params, refs);
+                case "user_updated_group" -> formatUserUpdatedGroup(params, refs);
+                case "user_invited_user_to_group" -> formatUserInvitedUserToGroup(params, refs);
+                case "user_joined_group" -> formatUserJoinedGroup(params, refs);
+                case "user_leaved_group" -> formatUserLeavedGroup(params, refs);
+                case "user_added_expense_to_group" -> formatUserAddedExpense(params, refs);
+                case "user_imported_expenses_to_group" -> formatUserImportedExpenses(params, refs);
+                case "user_settled_to_user_in_group" -> formatUserSettledToUserInGroup(params, refs);
+                case "user_updated_expense" -> formatUserUpdatedExpense(params, refs);
+                case "user_deleted_expense" -> formatUserDeletedExpense(params, refs);
                 default -> "Unknown Activity";
             };
         } catch (Exception e) {
@@ -54,75 +133,105 @@ public class ActivityFormatUtil {
         }
     }
 
-    private String formatUserCreatedGroup(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private void collectReferences(Map<String, Object> params, Set<Long> userIds, Set<Long> groupIds, Set<Long> expenseIds) {
+        if (params == null) return;
+        try {
+            for (String key : USER_PARAM_KEYS) {
+                if (params.get(key) != null) userIds.add(getLong(params, key));
+            }
+            if (params.get("groupId") != null) groupIds.add(getLong(params, "groupId"));
+            if (params.get("expenseId") != null) expenseIds.add(getLong(params, "expenseId"));
+
+            Object changesObj = params.get("changes");
+            if (changesObj == null) return;
+            List<Map<String, String>> changes = GSON.fromJson(GSON.toJson(changesObj), CHANGES_LIST_TYPE);
+            if (changes == null) return;
+            for (Map<String, String> change : changes) {
+                String field = change.get("field");
+                if ("participant_added".equals(field) || "participant_removed".equals(field)) {
+                    userIds.addAll(parseIds(change.getOrDefault("value", "")));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to collect activity references: {}", e.getMessage());
+        }
+    }
+
+    private String formatUserCreatedGroup(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> created group <b>%s</b>", userName, groupName);
     }
 
-    private String formatUserDeletedGroup(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserDeletedGroup(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> deleted group <b>%s</b>", userName, groupName);
     }
 
-    private String formatUserUpdatedGroup(Map<String, Object> params) {
-        String updaterName = formatUserName(getLong(params, "userId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserUpdatedGroup(Map<String, Object> params, Refs refs) {
+        String updaterName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
 
         String baseHtml = String.format("<b>%s</b> updated group <b>%s</b>", updaterName, groupName);
 
-        return baseHtml + buildChangeDetailsHtml(params.get("changes"));
+        return baseHtml + buildChangeDetailsHtml(params.get("changes"), refs);
     }
 
-    private String formatUserInvitedUserToGroup(Map<String, Object> params) {
-        String inviterName = formatUserName(getLong(params, "inviterId"));
-        String inviteeName = formatUserName(getLong(params, "inviteeId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserInvitedUserToGroup(Map<String, Object> params, Refs refs) {
+        String inviterName = formatUserName(getLong(params, "inviterId"), refs);
+        String inviteeName = formatUserName(getLong(params, "inviteeId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> invited <b>%s</b> to join group <b>%s</b>", inviterName, inviteeName, groupName);
     }
 
-    private String formatUserJoinedGroup(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserJoinedGroup(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> joined group <b>%s</b>", userName, groupName);
     }
 
-    private String formatUserLeavedGroup(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserLeavedGroup(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> leaved group <b>%s</b>", userName, groupName);
     }
 
-    private String formatUserAddedExpense(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserImportedExpenses(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
+        return String.format("<b>%s</b> imported <b>%s</b> expenses into group <b>%s</b>", userName, params.get("count"), groupName);
+    }
+
+    private String formatUserAddedExpense(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> added expense <i>\"%s\"</i> to group <b>%s</b>", userName, expenseTitle, groupName);
     }
 
-    private String formatUserSettledToUserInGroup(Map<String, Object> params) {
-        String userAName = formatUserName(getLong(params, "userAId"));
-        String userBName = formatUserName(getLong(params, "userBId"));
+    private String formatUserSettledToUserInGroup(Map<String, Object> params, Refs refs) {
+        String userAName = formatUserName(getLong(params, "userAId"), refs);
+        String userBName = formatUserName(getLong(params, "userBId"), refs);
         String amount = params.get("amount").toString();
-        String groupName = formatGroupName(getLong(params, "groupId"));
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> settled %s to <b>%s</b> in group <b>%s</b>", userAName, amount, userBName, groupName);
     }
 
-    private String formatUserUpdatedExpense(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserUpdatedExpense(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
 
         String baseHtml = String.format("<b>%s</b> updated expense <i>\"%s\"</i> in group <b>%s</b>", userName, expenseTitle, groupName);
 
-        return baseHtml + buildChangeDetailsHtml(params.get("changes"));
+        return baseHtml + buildChangeDetailsHtml(params.get("changes"), refs);
     }
 
-    private String formatUserDeletedExpense(Map<String, Object> params) {
-        String userName = formatUserName(getLong(params, "userId"));
-        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"));
-        String groupName = formatGroupName(getLong(params, "groupId"));
+    private String formatUserDeletedExpense(Map<String, Object> params, Refs refs) {
+        String userName = formatUserName(getLong(params, "userId"), refs);
+        String expenseTitle = formatExpenseTitle(getLong(params, "expenseId"), refs);
+        String groupName = formatGroupName(getLong(params, "groupId"), refs);
         return String.format("<b>%s</b> deleted expense <i>\"%s\"</i> from group <b>%s</b>", userName, expenseTitle, groupName);
     }
 
@@ -132,8 +241,8 @@ public class ActivityFormatUtil {
         return Long.valueOf(String.valueOf(value));
     }
 
-    private String formatUserName(Long userId) {
-        User user = userService.getUserByIdIncludeDeleted(userId);
+    private String formatUserName(Long userId, Refs refs) {
+        User user = refs.user(userId);
         if (user == null) return "<b>Undefined User</b>";
         String name = escapeHtml(user.getFullName());
         if (user.getDeleted()) {
@@ -143,8 +252,8 @@ public class ActivityFormatUtil {
         }
     }
 
-    private String formatGroupName(Long groupId) {
-        Group group = groupService.getGroupByIdIncludeDeleted(groupId);
+    private String formatGroupName(Long groupId, Refs refs) {
+        Group group = refs.group(groupId);
         if (group == null) return "<b>Undefined Group</b>";
         String name = escapeHtml(group.getName());
         if (group.getDeleted()) {
@@ -154,8 +263,8 @@ public class ActivityFormatUtil {
         }
     }
 
-    private String formatExpenseTitle(Long expenseId) {
-        Expense expense = expenseService.getExpenseByIdIncludeDeleted(expenseId);
+    private String formatExpenseTitle(Long expenseId, Refs refs) {
+        Expense expense = refs.expense(expenseId);
         if (expense == null) return "<b>Undefined Expense</b>";
         String title = escapeHtml(expense.getTitle());
         if (expense.getDeleted()) {
@@ -165,14 +274,21 @@ public class ActivityFormatUtil {
         }
     }
 
-    private String parseParticipantNames(String idsString) {
-        if (idsString == null || idsString.isBlank()) return "";
-        List<Long> ids = Arrays.stream(idsString.split(",")).map(Long::valueOf).toList();
-        List<User> users = userService.getUsersByIds(ids);
-        return users.stream().map(User::getFullName).sorted().collect(Collectors.joining(", "));
+    private String parseParticipantNames(String idsString, Refs refs) {
+        return parseIds(idsString).stream()
+                .map(refs::user)
+                .filter(u -> u != null && !u.getDeleted())
+                .map(User::getFullName)
+                .sorted()
+                .collect(Collectors.joining(", "));
     }
 
-    private String buildChangeDetailsHtml(Object changesObj) {
+    private List<Long> parseIds(String idsString) {
+        if (idsString == null || idsString.isBlank()) return List.of();
+        return Arrays.stream(idsString.split(",")).map(Long::valueOf).toList();
+    }
+
+    private String buildChangeDetailsHtml(Object changesObj, Refs refs) {
         if (changesObj == null) return "";
 
         List<Map<String, String>> changes = GSON.fromJson(GSON.toJson(changesObj), CHANGES_LIST_TYPE);
@@ -185,9 +301,9 @@ public class ActivityFormatUtil {
             String after = change.getOrDefault("after", "");
 
             if ("participant_added".equals(field)) {
-                changeDetails.append(String.format("<li>Added participants: <i>%s</i></li>", parseParticipantNames(change.getOrDefault("value", ""))));
+                changeDetails.append(String.format("<li>Added participants: <i>%s</i></li>", parseParticipantNames(change.getOrDefault("value", ""), refs)));
             } else if ("participant_removed".equals(field)) {
-                changeDetails.append(String.format("<li>Removed participants: <i>%s</i></li>", parseParticipantNames(change.getOrDefault("value", ""))));
+                changeDetails.append(String.format("<li>Removed participants: <i>%s</i></li>", parseParticipantNames(change.getOrDefault("value", ""), refs)));
             } else {
                 changeDetails.append(String.format(
                         "<li>Changed <b>%s</b> from <i>%s</i> to <i>%s</i></li>",
@@ -210,4 +326,33 @@ public class ActivityFormatUtil {
                 .replace("\"", "&quot;")
                 .replace("'", "&#x27;");
     }
+
+    private record Rendered(String html, List<String> references, long renderedAt) {
+    }
+
+    private final class Refs {
+        private final Map<Long, User> users;
+        private final Map<Long, Group> groups;
+        private final Map<Long, Expense> expenses;
+        private final boolean lazy;
+
+        Refs(Map<Long, User> users, Map<Long, Group> groups, Map<Long, Expense> expenses, boolean lazy) {
+            this.users = users;
+            this.groups = groups;
+            this.expenses = expenses;
+            this.lazy = lazy;
+        }
+
+        User user(Long id) {
+            return lazy ? users.computeIfAbsent(id, userService::getUserByIdIncludeDeleted) : users.get(id);
+        }
+
+        Group group(Long id) {
+            return lazy ? groups.computeIfAbsent(id, groupService::getGroupByIdIncludeDeleted) : groups.get(id);
+        }
+
+        Expense expense(Long id) {
+            return lazy ? expenses.computeIfAbsent(id, expenseService::getExpenseByIdIncludeDeleted) : expenses.get(id);
+        }
+    }
 }
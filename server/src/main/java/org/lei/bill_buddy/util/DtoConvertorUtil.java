@@ -39,6 +39,20 @@ public class DtoConvertorUtil {
 
     public ExpenseDTO convertExpenseToExpenseDTO(Expense expense) {
         User currentUser = userService.getCurrentUser();
+        return buildExpenseDTO(expense, calculateExpenseDebtsAmount(currentUser.getId(), expense));
+    }
+
+    public List<ExpenseDTO> convertExpensesToExpenseDTOs(List<Expense> expenses) {
+        if (expenses.isEmpty()) return Collections.emptyList();
+        Long userId = userService.getCurrentUser().getId();
+        Map<Long, BigDecimal> userShares = expenseService.getShareAmountsOfUser(
+                expenses.stream().map(Expense::getId).toList(), userId);
+        return expenses.stream()
+                .map(e -> buildExpenseDTO(e, debtsAmountFromShare(userId, e, userShares.getOrDefault(e.getId(), BigDecimal.ZERO))))
+                .toList();
+    }
+
+    private ExpenseDTO buildExpenseDTO(Expense expense, BigDecimal debtsAmount) {
         ExpenseDTO dto = new ExpenseDTO();
         dto.setId(expense.getId());
         dto.setTitle(expense.getTitle());
@@ -47,7 +61,7 @@ public class DtoConvertorUtil {
         dto.setPayer(convertUserToUserDTO(expense.getPayer()));
         dto.setExpenseDate(expense.getExpenseDate());
         dto.setType(expense.getType());
-        dto.setDebtsAmount(calculateExpenseDebtsAmount(currentUser.getId(), expense));
+        dto.setDebtsAmount(debtsAmount);
         dto.setSettled(expense.getSettled());
         return dto;
     }
@@ -64,9 +78,10 @@ public class DtoConvertorUtil {
                 });
         StringBuilder logs = new StringBuilder();
         List<Activity> activities = activityService.getActivitiesByExpenseId(expense.getId());
+        Map<Long, String> descriptions = activityFormatUtil.formatActivitiesAsHtml(activities);
         for (Activity activity : activities) {
             logs.append("<p>");
-            logs.append(activityFormatUtil.formatActivityDescriptionAsHtml(activity.getTemplate(), activity.getParams()));
+            logs.append(descriptions.get(activity.getId()));
             logs.append("</p>");
         }
         ExpenseDetailsDTO dto = new ExpenseDetailsDTO();
@@ -140,17 +155,18 @@ public class DtoConvertorUtil {
         Map<String, BigDecimal> currentUserOwes = new HashMap<>();
         Map<String, BigDecimal> owesCurrentUser = new HashMap<>();
         BigDecimal totalDebts = BigDecimal.ZERO;
+        Map<Long, User> users = userService.getUsersMapByIds(nonZeroDebtUserIds(netDebts));
 
         for (Map.Entry<Long, BigDecimal> entry : netDebts.entrySet()) {
             Long otherUserId = entry.getKey();
             BigDecimal netAmount = entry.getValue();
 
             if (netAmount.compareTo(BigDecimal.ZERO) > 0) {
-                String name = userService.getUserById(otherUserId).getFullName();
+                String name = users.get(otherUserId).getFullName();
                 owesCurrentUser.put(name, netAmount);
                 totalDebts = totalDebts.add(netAmount);
             } else if (netAmount.compareTo(BigDecimal.ZERO) < 0) {
-                String name = userService.getUserById(otherUserId).getFullName();
+                String name = users.get(otherUserId).getFullName();
                 currentUserOwes.put(name, netAmount.abs());
                 totalDebts = totalDebts.add(netAmount);
             }
@@ -172,6 +188,7 @@ public class DtoConvertorUtil {
         dto.setGroupId(group.getId());
         Map<Long, BigDecimal> debts = groupDebtService.getUserDebtsOfGroup(user.getId(), group.getId());
         List<DebtsOfAllCurrenciesDTO> debtsOfAllCurrencies = new ArrayList<>();
+        Map<Long, User> users = userService.getUsersMapByIds(nonZeroDebtUserIds(debts));
         for (Map.Entry<Long, BigDecimal> entry : debts.entrySet()) {
             Long otherUserId = entry.getKey();
             BigDecimal amount = entry.getValue();
@@ -183,7 +200,7 @@ public class DtoConvertorUtil {
                     debtsOfCurrencies.put(tgt, converted);
                 }
                 debtsOfAllCurrencies.add(new DebtsOfAllCurrenciesDTO(
-                        convertUserToUserDTO(userService.getUserById(otherUserId)),
+                        convertUserToUserDTO(users.get(otherUserId)),
                         debtsOfCurrencies));
             }
         }
@@ -192,6 +209,26 @@ public class DtoConvertorUtil {
         return dto;
     }
 
+    public SettlementPlanDTO formatSettlementPlanDTO(Group group, List<SettlementPlanService.Transfer> transfers) {
+        Set<Long> userIds = new HashSet<>();
+        for (SettlementPlanService.Transfer t : transfers) {
+            userIds.add(t.fromUserId());
+            userIds.add(t.toUserId());
+        }
+        Map<Long, User> users = userService.getUsersMapByIds(userIds);
+
+        SettlementPlanDTO dto = new SettlementPlanDTO();
+        dto.setGroupId(group.getId());
+        dto.setGroupCurrency(group.getDefaultCurrency());
+        dto.setTransfers(transfers.stream()
+                .map(t -> new SettlementTransferDTO(
+                        convertUserToUserDTO(users.get(t.fromUserId())),
+                        convertUserToUserDTO(users.get(t.toUserId())),
+                        t.amount()))
+                .toList());
+        return dto;
+    }
+
     public FriendDetailsDTO convertUserToFriendDetailsDTO(User user) {
         User currentUser = userService.getCurrentUser();
 
@@ -253,20 +290,82 @@ public class DtoConvertorUtil {
         return dto;
     }
 
+    public List<ActivityDTO> convertActivitiesToActivityDTOs(List<Activity> activities) {
+        if (activities.isEmpty()) return Collections.emptyList();
+        Set<Long> memberGroupIds = groupService.getGroupIdsOfUser(userService.getCurrentUser().getId());
+
+        Set<Long> actorIds = new HashSet<>();
+        Set<Long> groupIds = new HashSet<>();
+        Set<Long> expenseIds = new HashSet<>();
+        for (Activity activity : activities) {
+            actorIds.add(activity.getUserId());
+            switch (activity.getObjectType()) {
+                case GROUP -> groupIds.add(activity.getObjectId());
+                case EXPENSE -> expenseIds.add(activity.getObjectId());
+            }
+        }
+        Map<Long, User> actors = userService.getUsersMapByIds(actorIds);
+        Map<Long, Group> groups = groupService.getGroupsMapByIdsIncludeDeleted(groupIds);
+        Map<Long, Expense> expenses = expenseService.getExpensesMapByIdsIncludeDeleted(expenseIds);
+        Map<Long, String> descriptions = activityFormatUtil.formatActivitiesAsHtml(activities);
+
+        List<ActivityDTO> dtos = new ArrayList<>(activities.size());
+        for (Activity activity : activities) {
+            ActivityDTO dto = new ActivityDTO();
+            dto.setId(activity.getId());
+            User actor = actors.get(activity.getUserId());
+            dto.setUserAvatar(actor != null ? actor.getAvatar() : null);
+            dto.setObjectType(activity.getObjectType());
+            boolean accessible = true;
+            String objectPicture = "";
+
+            switch (activity.getObjectType()) {
+                case GROUP -> {
+                    Group group = groups.get(activity.getObjectId());
+                    accessible = !(group == null || Boolean.TRUE.equals(group.getDeleted()) || !memberGroupIds.contains(group.getId()));
+                    objectPicture = (group != null) ? group.getType().getImageUrl() : GroupType.OTHER.getImageUrl();
+                }
+                case EXPENSE -> {
+                    Expense expense = expenses.get(activity.getObjectId());
+                    accessible = !(expense == null || Boolean.TRUE.equals(expense.getDeleted()) || !memberGroupIds.contains(expense.getGroup().getId()));
+                    objectPicture = (expense != null) ? expense.getType().getImageUrl() : ExpenseType.OTHER.getImageUrl();
+                }
+            }
+
+            dto.setObjectId(activity.getObjectId());
+            dto.setAccessible(accessible);
+            dto.setObjectPicture(objectPicture);
+            dto.setCreatedAt(activity.getCreatedAt());
+            dto.setDescriptionHtml(descriptions.get(activity.getId()));
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
     private BigDecimal calculateExpenseDebtsAmount(Long userId, Expense expense) {
 
         List<ExpenseShare> shares = expenseService.getExpenseSharesByExpenseId(expense.getId());
 
-        boolean isPayer = expense.getPayer().getId().equals(userId);
-
         BigDecimal userShare = shares.stream()
                 .filter(share -> share.getUser().getId().equals(userId))
                 .map(ExpenseShare::getShareAmount)
                 .findFirst()
                 .orElse(BigDecimal.ZERO);
 
-        return isPayer
+        return debtsAmountFromShare(userId, expense, userShare);
+    }
+
+    private BigDecimal debtsAmountFromShare(Long userId, Expense expense, BigDecimal userShare) {
+        return expense.getPayer().getId().equals(userId)
                 ? expense.getAmount().subtract(userShare)
                 : userShare.negate();
     }
+
+    private Set<Long> nonZeroDebtUserIds(Map<Long, BigDecimal> debts) {
+        Set<Long> ids = new HashSet<>();
+        for (Map.Entry<Long, BigDecimal> entry : debts.entrySet()) {
+            if (entry.getValue().signum() != 0) ids.add(entry.getKey());
+        }
+        return ids;
+    }
 }
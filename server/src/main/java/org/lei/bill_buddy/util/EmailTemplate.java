@@ -0,0 +1,65 @@
+package org.lei.bill_buddy.util;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An HTML template with {@code {{name}}} placeholders, split once into literal and placeholder
+ * segments so rendering is a single pass over precomputed pieces.
+ */
+public final class EmailTemplate {
+
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int sizeHint;
+
+    private EmailTemplate(String[] literals, String[] placeholders, int sizeHint) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.sizeHint = sizeHint;
+    }
+
+    public static EmailTemplate load(String classpathLocation) {
+        try (InputStream in = new ClassPathResource(classpathLocation).getInputStream()) {
+            return compile(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load email template " + classpathLocation, e);
+        }
+    }
+
+    public static EmailTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+            if (close < 0) break;
+            literals.add(source.substring(pos, open));
+            placeholders.add(source.substring(open + 2, close).trim());
+            pos = close + 2;
+        }
+        literals.add(source.substring(pos));
+        return new EmailTemplate(literals.toArray(String[]::new), placeholders.toArray(String[]::new), source.length());
+    }
+
+    /**
+     * Unknown placeholders render as empty strings.
+     */
+    public String render(Map<String, String> values) {
+        StringBuilder out = new StringBuilder(sizeHint + 64);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            String value = values.get(placeholders[i]);
+            if (value != null) out.append(value);
+        }
+        return out.append(literals[literals.length - 1]).toString();
+    }
+}
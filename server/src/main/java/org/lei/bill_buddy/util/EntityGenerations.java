@@ -0,0 +1,120 @@
+package org.lei.bill_buddy.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local change clock for users, groups and expenses, so derived values such as rendered activity
+ * HTML can tell whether anything they read has changed since. A value stamped with {@link #now()} before
+ * its entities were loaded is current while none of them has been bumped past the stamp.
+ * <p>
+ * Users and groups are bumped by the {@link TwoLevelCache} evictions already broadcast on
+ * {@link TwoLevelCache#INVALIDATION_CHANNEL}; expenses have no cache and are bumped through
+ * {@link #invalidate}. Generations forgotten to bound memory raise a floor that invalidates every
+ * older stamp, so a forgotten change is never mistaken for no change.
+ */
+@Slf4j
+@Component
+public class EntityGenerations {
+    public static final String USER = "user";
+    public static final String GROUP = "group";
+    public static final String EXPENSE = "expense";
+    private static final Set<String> TYPES = Set.of(USER, GROUP, EXPENSE);
+    private static final String ALL = "*";
+
+    private final StringRedisTemplate redis;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+    private final Cache<String, Long> generations;
+
+    public EntityGenerations(StringRedisTemplate redis,
+                             @Value("${activity.render-cache.max-size:10000}") long maxSize) {
+        this.redis = redis;
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .<String, Long>evictionListener((key, generation, cause) -> {
+                    if (generation != null) raiseFloor(generation);
+                })
+                .build();
+    }
+
+    public static String key(String type, Long id) {
+        return type + ":" + id;
+    }
+
+    public long now() {
+        return clock.get();
+    }
+
+    public boolean unchangedSince(long stamp, Collection<String> keys) {
+        if (floor.get() > stamp) return false;
+        for (String key : keys) {
+            Long generation = generations.getIfPresent(key);
+            if (generation != null && generation > stamp) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies an invalidation received on {@link TwoLevelCache#INVALIDATION_CHANNEL}; other caches' names are ignored.
+     */
+    public void onInvalidation(String type, String id) {
+        if (!TYPES.contains(type)) return;
+        long generation = clock.incrementAndGet();
+        if (ALL.equals(id)) {
+            raiseFloor(generation);
+        } else {
+            generations.put(type + ":" + id, generation);
+        }
+    }
+
+    /**
+     * Bumps the entity on every node now and again once the surrounding transaction completes,
+     * so a render that read the row before the commit is not taken as current.
+     */
+    public void invalidate(String type, Long id) {
+        invalidate(type, id.toString());
+    }
+
+    /**
+     * Bumps every entity of the type, for bulk updates that do not know the affected ids.
+     */
+    public void invalidateAll(String type) {
+        invalidate(type, ALL);
+    }
+
+    private void invalidate(String type, String id) {
+        invalidateEverywhere(type, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateEverywhere(type, id);
+                }
+            });
+        }
+    }
+
+    private void invalidateEverywhere(String type, String id) {
+        onInvalidation(type, id);
+        try {
+            redis.convertAndSend(TwoLevelCache.INVALIDATION_CHANNEL, type + ":" + id);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast invalidation of {}:{}: {}", type, id, e.getMessage());
+        }
+    }
+
+    private void raiseFloor(long generation) {
+        floor.accumulateAndGet(generation, Math::max);
+    }
+}
@@ -1,41 +1,200 @@
 package org.lei.bill_buddy.util;
 
+import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import lombok.extern.slf4j.Slf4j;
+import org.lei.bill_buddy.DTO.ExchangeRateResponse;
 import org.lei.bill_buddy.config.exception.AppException;
 import org.lei.bill_buddy.enums.Currency;
 import org.lei.bill_buddy.enums.ErrorCode;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.InputStreamReader;
 import java.math.BigDecimal;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 @Component
 @Slf4j
 public class ExchangeRateFetcher {
 
-    private static final String API_KEY = "4340a3c5b8926ebac687c0c6";
-    private static final String API_URL = "https://v6.exchangerate-api.com/v6/" + API_KEY + "/pair";
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
 
+    private final String apiUrl;
+    private final Duration requestTimeout;
+    private final HttpClient client;
+    private final CircuitBreaker breaker;
+
+    // One outstanding request per path; concurrent callers share its future.
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, BigDecimal> lastKnownRates = new ConcurrentHashMap<>();
+
+    public ExchangeRateFetcher(@Value("${exchange-rate.api.url:https://v6.exchangerate-api.com/v6/4340a3c5b8926ebac687c0c6}") String apiUrl,
+                               @Value("${exchange-rate.api.connect-timeout-ms:2000}") long connectTimeoutMs,
+                               @Value("${exchange-rate.api.request-timeout-ms:5000}") long requestTimeoutMs,
+                               @Value("${exchange-rate.api.breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${exchange-rate.api.breaker.open-seconds:60}") long openSeconds) {
+        this.apiUrl = apiUrl;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.breaker = new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toMillis(openSeconds));
+    }
+
+    /**
+     * Blocking pair lookup for callers on request threads. Falls back to the last rate this
+     * node saw for the pair while the provider is failing or the breaker is open.
+     */
     public BigDecimal fetch(Currency from, Currency to) {
+        String pair = from + "/" + to;
         try {
-            String urlStr = API_URL + "/" + from + "/" + to;
-            HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-            c.setRequestMethod("GET");
+            return await(fetchAsync(from, to));
+        } catch (AppException e) {
+            BigDecimal lastKnown = lastKnownRates.get(pair);
+            if (lastKnown != null) {
+                log.warn("Serving last known rate for {}: {}", pair, lastKnown);
+                return lastKnown;
+            }
+            throw e;
+        }
+    }
 
-            JsonObject json = GSON.fromJson(new InputStreamReader(c.getInputStream()), JsonObject.class);
-            if ("success".equalsIgnoreCase(json.get("result").getAsString())) {
-                return json.get("conversion_rate").getAsBigDecimal();
+    public CompletableFuture<BigDecimal> fetchAsync(Currency from, Currency to) {
+        String pair = from + "/" + to;
+        return singleFlight("/pair/" + pair, body -> {
+            JsonObject json = GSON.fromJson(body, JsonObject.class);
+            if (!"success".equalsIgnoreCase(json.get("result").getAsString())) {
+                log.error("Fetch failed: {}", json);
+                throw new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED);
             }
-            log.error("Fetch failed: {}", json);
-        } catch (Exception e) {
-            log.error("HTTP error", e);
+            BigDecimal rate = json.get("conversion_rate").getAsBigDecimal();
+            lastKnownRates.put(pair, rate);
+            return rate;
+        });
+    }
+
+    /**
+     * One call for the whole vector: how much of each supported currency one unit of base buys.
+     */
+    public Map<Currency, BigDecimal> fetchLatest(Currency base) {
+        return await(singleFlight("/latest/" + base, body -> {
+            ExchangeRateResponse response = GSON.fromJson(body, ExchangeRateResponse.class);
+            if (!"success".equalsIgnoreCase(response.getResult()) || response.getConversionRates() == null) {
+                log.error("Fetch failed: {}", response);
+                throw new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED);
+            }
+            Map<Currency, BigDecimal> rates = new EnumMap<>(Currency.class);
+            for (Currency target : Currency.values()) {
+                BigDecimal rate = response.getConversionRates().get(target.name());
+                if (rate == null || rate.signum() <= 0) {
+                    log.error("Latest rates for {} are missing {}", base, target);
+                    throw new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED);
+                }
+                rates.put(target, rate);
+            }
+            return rates;
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> singleFlight(String path, Function<String, T> parser) {
+        if (!breaker.allowRequest()) {
+            log.warn("Exchange rate circuit open, skipping {}", path);
+            return CompletableFuture.failedFuture(new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED));
+        }
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<?> existing = inFlight.putIfAbsent(path, created);
+        if (existing != null) return (CompletableFuture<T>) existing;
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(apiUrl + path))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        log.error("Exchange rate provider returned {} for {}", response.statusCode(), path);
+                        throw new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED);
+                    }
+                    return parser.apply(response.body());
+                })
+                .whenComplete((result, error) -> {
+                    inFlight.remove(path, created);
+                    if (error == null) {
+                        breaker.recordSuccess();
+                        created.complete(result);
+                    } else {
+                        breaker.recordFailure();
+                        created.completeExceptionally(error);
+                    }
+                });
+        return created;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            // The request timeout already bounds the HTTP exchange; this only guards the handoff.
+            return future.get(requestTimeout.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AppException appException) throw appException;
+            log.error("HTTP error", e.getCause());
+        } catch (TimeoutException e) {
+            log.error("Exchange rate request timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         throw new AppException(ErrorCode.EXCHANGE_RATE_FETCH_FAILED);
     }
-}
 
+    /**
+     * Opens after N consecutive failures, then lets a single probe through once the open window passes.
+     */
+    static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMillis;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong openedAt = new AtomicLong(-1);
+
+        CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+        }
+
+        boolean allowRequest() {
+            long opened = openedAt.get();
+            if (opened < 0) return true;
+            long now = System.currentTimeMillis();
+            return now - opened >= openMillis && openedAt.compareAndSet(opened, now);
+        }
+
+        void recordSuccess() {
+            consecutiveFailures.set(0);
+            openedAt.set(-1);
+        }
+
+        void recordFailure() {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                openedAt.compareAndSet(-1, System.currentTimeMillis());
+            }
+        }
+    }
+}
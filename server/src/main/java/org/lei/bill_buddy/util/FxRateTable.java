@@ -0,0 +1,91 @@
+package org.lei.bill_buddy.util;
+
+import org.lei.bill_buddy.enums.Currency;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+/**
+ * Immutable currency-by-currency rate matrix indexed by {@link Currency#ordinal()}. Missing pairs are null.
+ * Instances are swapped wholesale, never mutated, so readers need no locking.
+ */
+public final class FxRateTable {
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final FxRateTable EMPTY = new FxRateTable(new BigDecimal[CURRENCIES.length][CURRENCIES.length]);
+
+    private final BigDecimal[][] rates;
+
+    private FxRateTable(BigDecimal[][] rates) {
+        this.rates = rates;
+    }
+
+    public static FxRateTable empty() {
+        return EMPTY;
+    }
+
+    public BigDecimal rate(Currency from, Currency to) {
+        if (from == to) return BigDecimal.ONE;
+        return rates[from.ordinal()][to.ordinal()];
+    }
+
+    public boolean isComplete() {
+        for (Currency from : CURRENCIES) {
+            for (Currency to : CURRENCIES) {
+                if (rate(from, to) == null) return false;
+            }
+        }
+        return true;
+    }
+
+    public FxRateTable with(Currency from, Currency to, BigDecimal rate) {
+        return toBuilder().put(from, to, rate).build();
+    }
+
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        for (int i = 0; i < rates.length; i++) {
+            System.arraycopy(rates[i], 0, builder.rates[i], 0, rates[i].length);
+        }
+        return builder;
+    }
+
+    /**
+     * Derives every cross rate from one vector quoted against a single base: rate(a, b) = v[b] / v[a].
+     * Currencies missing from the vector are left without rates.
+     */
+    public static FxRateTable fromBaseVector(Map<Currency, BigDecimal> unitsPerBase) {
+        Builder builder = new Builder();
+        for (Currency from : CURRENCIES) {
+            BigDecimal fromUnits = unitsPerBase.get(from);
+            if (fromUnits == null) continue;
+            for (Currency to : CURRENCIES) {
+                BigDecimal toUnits = unitsPerBase.get(to);
+                if (from == to || toUnits == null) continue;
+                builder.put(from, to, toUnits.divide(fromUnits, MathContext.DECIMAL64));
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final BigDecimal[][] rates = new BigDecimal[CURRENCIES.length][CURRENCIES.length];
+
+        public Builder put(Currency from, Currency to, BigDecimal rate) {
+            rates[from.ordinal()][to.ordinal()] = rate;
+            return this;
+        }
+
+        public FxRateTable build() {
+            BigDecimal[][] copy = new BigDecimal[rates.length][];
+            for (int i = 0; i < rates.length; i++) {
+                copy[i] = rates[i].clone();
+            }
+            return new FxRateTable(copy);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
@@ -28,9 +29,14 @@ public class JwtUtil {
 
     private SecretKey secretKey;
 
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(secretKey)
+                .build();
     }
 
     private String generateToken(String subject, Map<String, Object> claims, long duration) {
@@ -56,11 +62,15 @@ public class JwtUtil {
     }
 
     private Claims parseClaims(String token) {
-        Jws<Claims> claimsJws = Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token);
-        return claimsJws.getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    public Optional<Claims> tryParseClaims(String token) {
+        try {
+            return Optional.of(parseClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     public String getEmailFromToken(String token) {
@@ -68,12 +78,7 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token) {
-        try {
-            parseClaims(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
-        }
+        return tryParseClaims(token).isPresent();
     }
 
     public Map<String, Object> getInviteTokenDetails(String token) {
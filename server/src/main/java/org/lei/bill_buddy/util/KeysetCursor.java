@@ -0,0 +1,28 @@
+package org.lei.bill_buddy.util;
+
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.ErrorCode;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Position in a list ordered by (timestamp, id), sent to clients as "2025-05-01T12:30:00,42".
+ */
+public record KeysetCursor(LocalDateTime timestamp, Long id) {
+
+    public static KeysetCursor parse(String value) {
+        if (value == null || value.isBlank()) return null;
+        int comma = value.lastIndexOf(',');
+        if (comma <= 0) throw new AppException(ErrorCode.INVALID_REQUEST, "Invalid cursor.");
+        try {
+            return new KeysetCursor(LocalDateTime.parse(value.substring(0, comma)), Long.valueOf(value.substring(comma + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Invalid cursor.");
+        }
+    }
+
+    public String format() {
+        return timestamp + "," + id;
+    }
+}
@@ -2,25 +2,62 @@ package org.lei.bill_buddy.util;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.List;
 
+/**
+ * Throttles side effects such as outgoing emails, keyed by action and subject
+ * ({@code throttle:<action>:<subject>}). Every check is a single atomic Redis command,
+ * so concurrent requests cannot slip through between a read and a write.
+ */
 @Component
 @RequiredArgsConstructor
 public class RateLimiterUtil {
 
+    public static final String INVITE_EMAIL = "invite_email";
+
+    private static final String PREFIX = "throttle:";
+
+    // Fixed window counter: the first hit in a window starts its expiry.
+    private static final RedisScript<Long> WINDOW_COUNTER_SCRIPT = new DefaultRedisScript<>("""
+            local count = redis.call('INCR', KEYS[1])
+            if count == 1 then
+                redis.call('EXPIRE', KEYS[1], ARGV[1])
+            end
+            if count > tonumber(ARGV[2]) then
+                return 0
+            end
+            return 1
+            """, Long.class);
+
     private final StringRedisTemplate redisTemplate;
 
-    public boolean isAllowed(String ip, int seconds) {
-        String PREFIX = "send_email:";
-        String key = PREFIX + ip;
-        Boolean exists = redisTemplate.hasKey(key);
-        if (exists) {
-            return false;
+    /**
+     * Allows one call per window.
+     */
+    public boolean isAllowed(String action, String subject, int seconds) {
+        Boolean acquired = redisTemplate.opsForValue()
+                .setIfAbsent(key(action, subject), "1", Duration.ofSeconds(seconds));
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    /**
+     * Allows up to {@code maxCount} calls per window.
+     */
+    public boolean isAllowed(String action, String subject, int maxCount, int seconds) {
+        if (maxCount <= 1) {
+            return isAllowed(action, subject, seconds);
         }
-        redisTemplate.opsForValue().set(key, "1", Duration.ofSeconds(seconds));
-        return true;
+        Long allowed = redisTemplate.execute(WINDOW_COUNTER_SCRIPT, List.of(key(action, subject)),
+                String.valueOf(seconds), String.valueOf(maxCount));
+        return allowed != null && allowed == 1L;
     }
-}
 
+    private static String key(String action, String subject) {
+        return PREFIX + action + ":" + subject;
+    }
+}
@@ -0,0 +1,108 @@
+package org.lei.bill_buddy.util;
+
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.ErrorCode;
+
+/**
+ * Splits an amount in cents so the shares always sum to the total. Leftover cents go to the largest
+ * fractional remainders, ties to the lower index, so the same input always yields the same split.
+ * Works in place on caller-supplied arrays and allocates nothing.
+ */
+public final class SplitAllocator {
+
+    public static final long PERCENT_SCALE = 10_000;
+
+    private SplitAllocator() {
+    }
+
+    public static void equal(long totalCents, long[] out) {
+        int n = out.length;
+        if (n == 0) throw new AppException(ErrorCode.INVALID_INPUT, "At least one participant is required.");
+        long base = totalCents / n;
+        long leftover = totalCents % n;
+        int sign = Long.signum(leftover);
+        leftover = Math.abs(leftover);
+        for (int i = 0; i < n; i++) {
+            out[i] = base + (i < leftover ? sign : 0);
+        }
+    }
+
+    /**
+     * Percentages in basis points (12.5% = 1250); they must add up to 100%.
+     */
+    public static void percentage(long totalCents, long[] basisPoints, long[] out) {
+        long sum = 0;
+        for (long bp : basisPoints) sum += bp;
+        if (sum != PERCENT_SCALE) throw new AppException(ErrorCode.INVALID_INPUT, "Percentages must add up to 100.");
+        weighted(totalCents, basisPoints, out);
+    }
+
+    public static void weighted(long totalCents, long[] weights, long[] out) {
+        int n = weights.length;
+        if (n == 0 || out.length != n) throw new AppException(ErrorCode.INVALID_INPUT, "Weights do not match participants.");
+        long totalWeight = 0;
+        for (long w : weights) {
+            if (w < 0) throw new AppException(ErrorCode.INVALID_INPUT, "Weights must not be negative.");
+            totalWeight = Math.addExact(totalWeight, w);
+        }
+        if (totalWeight == 0) throw new AppException(ErrorCode.INVALID_INPUT, "Weights must not all be zero.");
+
+        int sign = totalCents < 0 ? -1 : 1;
+        long total = Math.abs(totalCents);
+        long allocated = 0;
+        for (int i = 0; i < n; i++) {
+            out[i] = Math.multiplyExact(total, weights[i]) / totalWeight;
+            allocated += out[i];
+        }
+
+        long leftover = total - allocated;
+        if (leftover > 0) {
+            // Smallest remainder value that still earns a cent, found by bisecting the remainder range.
+            long lo = 0, hi = totalWeight - 1;
+            while (lo < hi) {
+                long mid = (lo + hi + 1) >>> 1;
+                if (countRemaindersAtLeast(total, weights, totalWeight, mid) >= leftover) lo = mid;
+                else hi = mid - 1;
+            }
+            long threshold = lo;
+            long tieSlots = leftover - countRemaindersAtLeast(total, weights, totalWeight, threshold + 1);
+            for (int i = 0; i < n; i++) {
+                long remainder = remainder(total, weights[i], totalWeight);
+                if (remainder > threshold) {
+                    out[i]++;
+                } else if (remainder == threshold && tieSlots > 0) {
+                    out[i]++;
+                    tieSlots--;
+                }
+            }
+        }
+
+        if (sign < 0) {
+            for (int i = 0; i < n; i++) out[i] = -out[i];
+        }
+    }
+
+    /**
+     * Validates caller-provided amounts against the total and copies them to out.
+     */
+    public static void exact(long totalCents, long[] amounts, long[] out) {
+        long sum = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            sum = Math.addExact(sum, amounts[i]);
+            out[i] = amounts[i];
+        }
+        if (sum != totalCents) throw new AppException(ErrorCode.INVALID_INPUT, "Share amounts must add up to the total.");
+    }
+
+    private static long countRemaindersAtLeast(long total, long[] weights, long totalWeight, long value) {
+        long count = 0;
+        for (long w : weights) {
+            if (remainder(total, w, totalWeight) >= value) count++;
+        }
+        return count;
+    }
+
+    private static long remainder(long total, long weight, long totalWeight) {
+        return Math.multiplyExact(total, weight) % totalWeight;
+    }
+}
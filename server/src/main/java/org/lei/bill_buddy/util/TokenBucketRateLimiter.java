@@ -0,0 +1,104 @@
+package org.lei.bill_buddy.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-key token buckets. Redis holds the cross-node bucket and is the authority; a bucket4j bucket
+ * per key on this node answers first, so a caller already over the limit here is rejected without
+ * a round-trip, and decisions fall back to it while Redis is unavailable.
+ */
+@Slf4j
+@Component
+public class TokenBucketRateLimiter {
+
+    // Refills continuously at capacity/window; returns {allowed, remaining, retryAfterMs, resetMs}.
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local window_ms = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local rate = capacity / window_ms
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1])
+            local ts = tonumber(state[2])
+            if tokens == nil or ts == nil then
+                tokens = capacity
+                ts = now
+            end
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+            local allowed = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+                allowed = 1
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], window_ms)
+            local retry_ms = 0
+            if allowed == 0 then
+                retry_ms = math.ceil((1 - tokens) / rate)
+            end
+            return {allowed, math.floor(tokens), retry_ms, math.ceil((capacity - tokens) / rate)}
+            """, List.class);
+
+    private final StringRedisTemplate redis;
+    private final Cache<String, Bucket> localBuckets;
+
+    public TokenBucketRateLimiter(StringRedisTemplate redis,
+                                  @Value("${rate-limit.local.max-keys:100000}") long maxKeys) {
+        this.redis = redis;
+        this.localBuckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+
+    public Decision tryConsume(String key, int capacity, int windowSeconds) {
+        Bucket local = localBuckets.get(key + "|" + capacity + "/" + windowSeconds,
+                k -> Bucket.builder()
+                        .addLimit(Bandwidth.classic(capacity, Refill.greedy(capacity, Duration.ofSeconds(windowSeconds))))
+                        .build());
+        ConsumptionProbe probe = local.tryConsumeAndReturnRemaining(1);
+        if (!probe.isConsumed()) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1);
+            return new Decision(false, capacity, 0, windowSeconds, retryAfter);
+        }
+
+        try {
+            List<?> result = redis.execute(TOKEN_BUCKET_SCRIPT, List.of("rl:" + key),
+                    String.valueOf(capacity), String.valueOf(TimeUnit.SECONDS.toMillis(windowSeconds)));
+            boolean allowed = toLong(result.get(0)) == 1;
+            long remaining = toLong(result.get(1));
+            long retryAfter = allowed ? 0 : Math.max(1, ceilSeconds(toLong(result.get(2))));
+            return new Decision(allowed, capacity, remaining, ceilSeconds(toLong(result.get(3))), retryAfter);
+        } catch (Exception e) {
+            log.warn("Rate limit store unavailable, using the local bucket for {}: {}", key, e.getMessage());
+            return new Decision(true, capacity, probe.getRemainingTokens(), windowSeconds, 0);
+        }
+    }
+
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static long ceilSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+
+    public record Decision(boolean allowed, long limit, long remaining, long resetSeconds, long retryAfterSeconds) {
+    }
+}
@@ -0,0 +1,119 @@
+package org.lei.bill_buddy.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache with a node-local Caffeine L1 in front of a shared Redis L2.
+ * Values must be immutable snapshots; null loads are not cached. Evictions are
+ * published on {@link #INVALIDATION_CHANNEL} so every node drops its L1 copy.
+ */
+@Slf4j
+public class TwoLevelCache<V> {
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate";
+
+    private final String name;
+    private final Class<V> type;
+    private final Cache<String, V> local;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final Duration remoteTtl;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public TwoLevelCache(String name, Class<V> type, long localMaxSize, Duration localTtl, Duration remoteTtl,
+                         StringRedisTemplate redis, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.type = type;
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+        this.remoteTtl = remoteTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        this.remoteHits = Counter.builder("cache.l2.gets").tag("cache", name).tag("result", "hit").register(meterRegistry);
+        this.remoteMisses = Counter.builder("cache.l2.gets").tag("cache", name).tag("result", "miss").register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(String key, Supplier<V> loader) {
+        V value = local.getIfPresent(key);
+        if (value != null) return value;
+
+        String redisKey = redisKey(key);
+        try {
+            String json = redis.opsForValue().get(redisKey);
+            if (json != null) {
+                value = objectMapper.readValue(json, type);
+                local.put(key, value);
+                remoteHits.increment();
+                return value;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read {} from redis, falling back to loader: {}", redisKey, e.getMessage());
+        }
+        remoteMisses.increment();
+
+        value = loader.get();
+        if (value == null) return null;
+        local.put(key, value);
+        try {
+            redis.opsForValue().set(redisKey, objectMapper.writeValueAsString(value), remoteTtl);
+        } catch (Exception e) {
+            log.warn("Failed to write {} to redis: {}", redisKey, e.getMessage());
+        }
+        return value;
+    }
+
+    /**
+     * Drops the entry everywhere now and again once the surrounding transaction completes,
+     * so neither a concurrent reader nor a read inside a rolled-back transaction leaves
+     * uncommitted state behind.
+     */
+    public void evict(String key) {
+        evictEverywhere(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictEverywhere(key);
+                }
+            });
+        }
+    }
+
+    public void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    private void evictEverywhere(String key) {
+        local.invalidate(key);
+        try {
+            redis.delete(redisKey(key));
+            redis.convertAndSend(INVALIDATION_CHANNEL, name + ":" + key);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast invalidation of {}:{}: {}", name, key, e.getMessage());
+        }
+    }
+
+    private String redisKey(String key) {
+        return "cache:" + name + ":" + key;
+    }
+}
@@ -1,37 +1,99 @@
 package org.lei.bill_buddy.util;
 
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.ErrorCode;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.security.SecureRandom;
+import java.util.List;
 
+/**
+ * One-time email verification codes kept in Redis, so any node can verify a code another node issued.
+ * A code is consumed on the first correct guess. Wrong guesses are counted per email over a lockout
+ * window that survives reissuing the code; once the limit is reached the current code is burned and
+ * the email can neither verify nor request codes until the window passes.
+ */
 @Component
 public class VerificationCodeUtil {
-    private final Map<String, String> verificationCodes = new ConcurrentHashMap<>();
-    private final Map<String, Long> expirationTimes = new ConcurrentHashMap<>();
+    private static final String CODE_PREFIX = "verify_code:";
+    private static final String FAILURES_PREFIX = "verify_code_failures:";
+    private static final SecureRandom RANDOM = new SecureRandom();
 
-    @Value("#{${reset-password.code.expiration}}")
-    private long codeExpirationMillis;
+    // Returns 0 without writing a code while the email is locked out.
+    private static final RedisScript<Long> ISSUE_SCRIPT = new DefaultRedisScript<>("""
+            local failures = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if failures >= tonumber(ARGV[3]) then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 1
+            """, Long.class);
 
-    public boolean verifyCode(String email, String code) {
-        String stored = verificationCodes.get(email);
-        Long expiration = expirationTimes.get(email);
+    // Returns 1 and deletes the code on a match, 0 on a miss, -1 while locked out.
+    private static final RedisScript<Long> VERIFY_SCRIPT = new DefaultRedisScript<>("""
+            local max = tonumber(ARGV[2])
+            local failures = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if failures >= max then
+                return -1
+            end
+            local stored = redis.call('GET', KEYS[1])
+            if not stored then
+                return 0
+            end
+            if stored == ARGV[1] then
+                redis.call('DEL', KEYS[1], KEYS[2])
+                return 1
+            end
+            failures = redis.call('INCR', KEYS[2])
+            if failures == 1 then
+                redis.call('EXPIRE', KEYS[2], ARGV[3])
+            end
+            if failures >= max then
+                redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long codeExpirationMillis;
+    private final int maxFailures;
+    private final long lockoutSeconds;
 
-        if (stored == null || expiration == null || System.currentTimeMillis() > expiration) {
-            verificationCodes.remove(email);
-            expirationTimes.remove(email);
-            return false;
-        }
+    public VerificationCodeUtil(StringRedisTemplate redisTemplate,
+                                @Value("#{${reset-password.code.expiration}}") long codeExpirationMillis,
+                                @Value("${reset-password.code.max-attempts:5}") int maxFailures,
+                                @Value("${reset-password.code.lockout-seconds:3600}") long lockoutSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.codeExpirationMillis = codeExpirationMillis;
+        this.maxFailures = maxFailures;
+        this.lockoutSeconds = lockoutSeconds;
+    }
 
-        return stored.equals(code);
+    public boolean verifyCode(String email, String code) {
+        if (code == null) return false;
+        Long result = redisTemplate.execute(VERIFY_SCRIPT, keys(email),
+                code, String.valueOf(maxFailures), String.valueOf(lockoutSeconds));
+        if (result != null && result == -1L) throw lockedOut();
+        return result != null && result == 1L;
     }
 
     public String generateCode(String email) {
-        String code = String.format("%06d", new Random().nextInt(1000000));
-        verificationCodes.put(email, code);
-        expirationTimes.put(email, System.currentTimeMillis() + codeExpirationMillis);
+        String code = String.format("%06d", RANDOM.nextInt(1000000));
+        Long issued = redisTemplate.execute(ISSUE_SCRIPT, keys(email),
+                code, String.valueOf(codeExpirationMillis), String.valueOf(maxFailures));
+        if (issued == null || issued != 1L) throw lockedOut();
         return code;
     }
+
+    private static List<String> keys(String email) {
+        return List.of(CODE_PREFIX + email, FAILURES_PREFIX + email);
+    }
+
+    private static AppException lockedOut() {
+        return new AppException(ErrorCode.TOO_MANY_REQUESTS, "Too many failed verification attempts. Please try again later.");
+    }
 }
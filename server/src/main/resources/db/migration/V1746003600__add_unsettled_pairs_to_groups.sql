@@ -0,0 +1,14 @@
+ALTER TABLE groups_table
+    ADD COLUMN unsettled_pairs INT NOT NULL DEFAULT 0;
+
+UPDATE groups_table g
+    JOIN (SELECT t.group_id, COUNT(*) AS cnt
+          FROM (SELECT gd.group_id
+                FROM group_debts gd
+                WHERE gd.deleted = FALSE
+                GROUP BY gd.group_id,
+                         LEAST(gd.lender_id, gd.borrower_id),
+                         GREATEST(gd.lender_id, gd.borrower_id)
+                HAVING SUM(CASE WHEN gd.lender_id < gd.borrower_id THEN gd.amount ELSE -gd.amount END) <> 0) t
+          GROUP BY t.group_id) c ON c.group_id = g.id
+SET g.unsettled_pairs = c.cnt;
@@ -0,0 +1,37 @@
+CREATE TABLE group_debt_ledger
+(
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    group_id      BIGINT         NOT NULL,
+    min_user_id   BIGINT         NOT NULL,
+    max_user_id   BIGINT         NOT NULL,
+    signed_amount DECIMAL(10, 2) NOT NULL DEFAULT 0,
+    deleted       BOOLEAN        NOT NULL DEFAULT FALSE,
+
+    created_at    DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at    DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    CONSTRAINT uk_group_debt_ledger_pair UNIQUE (group_id, min_user_id, max_user_id),
+    CONSTRAINT fk_group_debt_ledger_group FOREIGN KEY (group_id) REFERENCES groups_table (id),
+    CONSTRAINT fk_group_debt_ledger_min_user FOREIGN KEY (min_user_id) REFERENCES users (id),
+    CONSTRAINT fk_group_debt_ledger_max_user FOREIGN KEY (max_user_id) REFERENCES users (id),
+    INDEX idx_group_debt_ledger_pair (min_user_id, max_user_id)
+);
+
+-- signed_amount > 0 means max_user owes min_user, < 0 means min_user owes max_user.
+INSERT INTO group_debt_ledger (group_id, min_user_id, max_user_id, signed_amount, deleted, created_at, updated_at)
+SELECT gd.group_id,
+       LEAST(gd.lender_id, gd.borrower_id),
+       GREATEST(gd.lender_id, gd.borrower_id),
+       COALESCE(SUM(CASE
+                        WHEN gd.deleted = TRUE THEN 0
+                        WHEN gd.lender_id < gd.borrower_id THEN gd.amount
+                        ELSE -gd.amount END), 0),
+       MIN(gd.deleted),
+       MIN(gd.created_at),
+       MAX(gd.updated_at)
+FROM group_debts gd
+WHERE gd.lender_id <> gd.borrower_id
+GROUP BY gd.group_id, LEAST(gd.lender_id, gd.borrower_id), GREATEST(gd.lender_id, gd.borrower_id);
+
+DROP TABLE group_debts;
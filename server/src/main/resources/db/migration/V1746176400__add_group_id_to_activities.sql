@@ -0,0 +1,15 @@
+ALTER TABLE activities
+    ADD COLUMN group_id BIGINT NULL AFTER object_id;
+
+UPDATE activities a
+SET a.group_id = a.object_id
+WHERE a.object_type = 'GROUP';
+
+UPDATE activities a
+    JOIN expenses e ON e.id = a.object_id
+SET a.group_id = e.group_id
+WHERE a.object_type = 'EXPENSE';
+
+CREATE INDEX idx_activities_group_created ON activities (group_id, created_at);
+
+CREATE INDEX idx_group_members_user_group ON group_members (user_id, group_id);
@@ -0,0 +1 @@
+CREATE INDEX idx_expenses_group_date_id ON expenses (group_id, expense_date, id);
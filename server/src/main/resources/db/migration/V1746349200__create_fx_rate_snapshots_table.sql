@@ -0,0 +1,7 @@
+CREATE TABLE fx_rate_snapshots
+(
+    rate_date     DATE         NOT NULL PRIMARY KEY,
+    base_currency VARCHAR(10)  NOT NULL,
+    rates         VARCHAR(512) NOT NULL,
+    created_at    DATETIME     NOT NULL
+);
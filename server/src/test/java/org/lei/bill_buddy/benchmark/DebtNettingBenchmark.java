@@ -0,0 +1,91 @@
+package org.lei.bill_buddy.benchmark;
+
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.service.GroupDebtService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairwise debt netting over a batch of shares: the previous BigDecimal merge against
+ * the long-cents accumulation used by {@link GroupDebtService.DebtDeltas}.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.lei.bill_buddy.benchmark.DebtNettingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DebtNettingBenchmark {
+
+    @Param({"1000", "100000"})
+    int shares;
+
+    @Param({"20"})
+    int members;
+
+    User[] lenders;
+    User[] borrowers;
+    BigDecimal[] amounts;
+    long[] amountCents;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        User[] users = new User[members];
+        for (int i = 0; i < members; i++) {
+            users[i] = new User();
+            users[i].setId(i + 1L);
+        }
+        lenders = new User[shares];
+        borrowers = new User[shares];
+        amounts = new BigDecimal[shares];
+        amountCents = new long[shares];
+        for (int i = 0; i < shares; i++) {
+            lenders[i] = users[random.nextInt(members)];
+            borrowers[i] = users[random.nextInt(members)];
+            amountCents[i] = random.nextInt(100_000) + 1;
+            amounts[i] = BigDecimal.valueOf(amountCents[i], 2);
+        }
+    }
+
+    @Benchmark
+    public Map<Long, BigDecimal> bigDecimal() {
+        Map<Long, BigDecimal> net = new HashMap<>();
+        for (int i = 0; i < shares; i++) {
+            long lender = lenders[i].getId();
+            long borrower = borrowers[i].getId();
+            if (lender == borrower) continue;
+            if (lender < borrower) {
+                net.merge(lender << 32 | borrower, amounts[i], BigDecimal::add);
+            } else {
+                net.merge(borrower << 32 | lender, amounts[i].negate(), BigDecimal::add);
+            }
+        }
+        return net;
+    }
+
+    @Benchmark
+    public GroupDebtService.DebtDeltas longCents() {
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
+        for (int i = 0; i < shares; i++) {
+            deltas.add(lenders[i], borrowers[i], amountCents[i]);
+        }
+        return deltas;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DebtNettingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
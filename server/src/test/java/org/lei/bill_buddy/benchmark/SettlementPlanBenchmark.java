@@ -0,0 +1,54 @@
+package org.lei.bill_buddy.benchmark;
+
+import org.lei.bill_buddy.service.SettlementPlanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.lei.bill_buddy.benchmark.SettlementPlanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettlementPlanBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int members;
+
+    long[] userIds;
+    long[] balances;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        userIds = new long[members];
+        balances = new long[members];
+        long sum = 0;
+        for (int i = 0; i < members; i++) {
+            userIds[i] = i + 1;
+            balances[i] = i == members - 1 ? -sum : random.nextInt(1_000_001) - 500_000;
+            sum += balances[i];
+        }
+    }
+
+    @Benchmark
+    public List<SettlementPlanService.Transfer> plan() {
+        return SettlementPlanService.plan(userIds, balances);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SettlementPlanBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,61 @@
+package org.lei.bill_buddy.config.web;
+
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.util.EntityGenerations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AuthPrincipalCacheTest {
+
+    EntityGenerations generations = new EntityGenerations(mock(StringRedisTemplate.class), 100);
+    AuthPrincipalCache cache = new AuthPrincipalCache(generations, 100, 300);
+    Date expiresAt = new Date(System.currentTimeMillis() + 60_000);
+
+    @Test
+    void cached_principal_is_a_snapshot_without_the_password() {
+        cache.put("token", new UserPrincipal(user(7L, "Ada")), expiresAt, cache.stamp());
+
+        UserPrincipal cached = cache.get("token");
+        cached.getUser().setGivenName("Mallory");
+
+        assertThat(cache.get("token").getUser().getGivenName()).isEqualTo("Ada");
+        assertThat(cache.get("token").getPassword()).isNull();
+    }
+
+    @Test
+    void evicting_a_user_drops_every_token_of_that_user() {
+        cache.put("a", new UserPrincipal(user(7L, "Ada")), expiresAt, cache.stamp());
+        cache.put("b", new UserPrincipal(user(7L, "Ada")), expiresAt, cache.stamp());
+        cache.put("c", new UserPrincipal(user(8L, "Bob")), expiresAt, cache.stamp());
+
+        cache.evictUser(7L);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+    }
+
+    @Test
+    void principal_loaded_before_a_user_change_is_not_cached() {
+        long loadedAt = cache.stamp();
+        generations.onInvalidation(EntityGenerations.USER, "7");
+
+        cache.put("token", new UserPrincipal(user(7L, "Ada")), expiresAt, loadedAt);
+
+        assertThat(cache.get("token")).isNull();
+    }
+
+    private static User user(Long id, String givenName) {
+        User user = new User();
+        user.setId(id);
+        user.setGivenName(givenName);
+        user.setEmail(givenName.toLowerCase() + "@billbuddy.test");
+        user.setPassword("hash");
+        return user;
+    }
+}
@@ -70,7 +70,7 @@ class ActivityControllerTest {
         Activity mockActivity = Mockito.mock(Activity.class);
         Page<Activity> page = new PageImpl<>(List.of(mockActivity), PageRequest.of(0, 10), 1);
         Mockito.when(activityService.getActivitiesByUserId(eq(1L), any(Pageable.class))).thenReturn(page);
-        Mockito.when(dtoConvertorUtil.convertActivityToActivityDTO(mockActivity)).thenReturn(dto);
+        Mockito.when(dtoConvertorUtil.convertActivitiesToActivityDTOs(List.of(mockActivity))).thenReturn(List.of(dto));
 
         mockMvc.perform(get("/api/activities")
                         .param("page", "0")
@@ -0,0 +1,91 @@
+package org.lei.bill_buddy.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.DTO.UserSnapshotDTO;
+import org.lei.bill_buddy.config.web.AuthPrincipalCache;
+import org.lei.bill_buddy.config.web.UserPrincipal;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.repository.UserRepository;
+import org.lei.bill_buddy.service.EmailProducer;
+import org.lei.bill_buddy.service.GoogleAuthService;
+import org.lei.bill_buddy.service.UserService;
+import org.lei.bill_buddy.util.JwtUtil;
+import org.lei.bill_buddy.util.TwoLevelCache;
+import org.lei.bill_buddy.util.VerificationCodeUtil;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives update-password with the real UserService and a principal restored from a token,
+ * which carries no password hash, as it does behind the JWT filter.
+ */
+class AuthControllerUpdatePasswordTest {
+
+    BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    UserRepository userRepository = mock(UserRepository.class);
+    JwtUtil jwtUtil = mock(JwtUtil.class);
+    MockMvc mockMvc;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        User stored = new User();
+        stored.setId(7L);
+        stored.setEmail("ada@billbuddy.test");
+        stored.setGivenName("Ada");
+        stored.setFamilyName("Lovelace");
+        stored.setPassword(passwordEncoder.encode("old-secret"));
+        when(userRepository.findById(7L)).thenReturn(Optional.of(stored));
+        when(jwtUtil.generateResetPasswordToken("ada@billbuddy.test")).thenReturn("reset-token");
+
+        UserService userService = new UserService(userRepository, passwordEncoder,
+                mock(AuthPrincipalCache.class), mock(TwoLevelCache.class));
+        AuthController controller = new AuthController(mock(AuthenticationManager.class), userService,
+                mock(GoogleAuthService.class), jwtUtil, mock(VerificationCodeUtil.class), mock(EmailProducer.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        UserPrincipal principal = new UserPrincipal(UserSnapshotDTO.from(stored));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void correct_old_password_returns_a_reset_token() throws Exception {
+        mockMvc.perform(post("/api/auth/update-password")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"oldPassword\":\"old-secret\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token", is("reset-token")));
+    }
+
+    @Test
+    void wrong_old_password_is_rejected() throws Exception {
+        mockMvc.perform(post("/api/auth/update-password")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"oldPassword\":\"guess\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("Password is incorrect.")));
+    }
+}
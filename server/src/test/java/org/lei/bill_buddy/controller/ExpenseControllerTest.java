@@ -200,7 +200,7 @@ class ExpenseControllerTest {
                 .thenReturn(new PageImpl<>(List.of(exp), PageRequest.of(0, 10), 1));
         ExpenseDTO dtoOut = new ExpenseDTO();
         dtoOut.setId(1L);
-        when(dto.convertExpenseToExpenseDTO(exp)).thenReturn(dtoOut);
+        when(dto.convertExpensesToExpenseDTOs(List.of(exp))).thenReturn(List.of(dtoOut));
         mvc.perform(get("/api/expenses").param("groupId", "10"))
                 .andExpect(status().isOk()).andExpect(jsonPath("$.content", hasSize(1)));
     }
@@ -89,6 +89,8 @@ class GroupControllerTest {
         @Bean @Primary GroupDebtService h(){ return Mockito.mock(GroupDebtService.class);}
         @Bean @Primary ActivityService j(){ return Mockito.mock(ActivityService.class);}
         @Bean @Primary GroupDeleteService k(){ return Mockito.mock(GroupDeleteService.class);}
+        @Bean @Primary SettlementPlanService l(){ return Mockito.mock(SettlementPlanService.class);}
+        @Bean @Primary ExpenseImportService m(){ return Mockito.mock(ExpenseImportService.class);}
     }
 }
 
@@ -0,0 +1,39 @@
+package org.lei.bill_buddy.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyConverterTest {
+
+    MoneyConverter converter = new MoneyConverter();
+
+    @Test
+    void writes_two_decimal_places() {
+        assertThat(converter.convertToDatabaseColumn(Money.ofCents(1234)).toPlainString()).isEqualTo("12.34");
+        assertThat(converter.convertToDatabaseColumn(Money.ofCents(700)).toPlainString()).isEqualTo("7.00");
+        assertThat(converter.convertToDatabaseColumn(Money.ofCents(-5)).toPlainString()).isEqualTo("-0.05");
+    }
+
+    @Test
+    void round_trips_through_the_column() {
+        for (long cents : new long[]{0, 1, -1, 99, 1234, -987_654_321, 99_999_999}) {
+            Money money = Money.ofCents(cents);
+            assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(money))).isEqualTo(money);
+        }
+    }
+
+    @Test
+    void reads_column_values_of_any_scale() {
+        assertThat(converter.convertToEntityAttribute(new BigDecimal("12.3"))).isEqualTo(Money.ofCents(1230));
+        assertThat(converter.convertToEntityAttribute(new BigDecimal("12.345"))).isEqualTo(Money.ofCents(1235));
+    }
+
+    @Test
+    void null_maps_to_null_both_ways() {
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+}
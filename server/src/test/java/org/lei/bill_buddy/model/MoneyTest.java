@@ -0,0 +1,64 @@
+package org.lei.bill_buddy.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void toCents_rounds_half_up_to_two_places() {
+        assertThat(Money.toCents(new BigDecimal("12.345"))).isEqualTo(1235);
+        assertThat(Money.toCents(new BigDecimal("12.344999"))).isEqualTo(1234);
+        assertThat(Money.toCents(new BigDecimal("0.005"))).isEqualTo(1);
+        assertThat(Money.toCents(new BigDecimal("0.004"))).isZero();
+    }
+
+    @Test
+    void toCents_rounds_negatives_away_from_zero_on_the_half() {
+        assertThat(Money.toCents(new BigDecimal("-12.345"))).isEqualTo(-1235);
+        assertThat(Money.toCents(new BigDecimal("-12.344"))).isEqualTo(-1234);
+        assertThat(Money.toCents(new BigDecimal("-0.005"))).isEqualTo(-1);
+    }
+
+    @Test
+    void toCents_accepts_any_scale() {
+        assertThat(Money.toCents(new BigDecimal("20"))).isEqualTo(2000);
+        assertThat(Money.toCents(new BigDecimal("20.1"))).isEqualTo(2010);
+        assertThat(Money.toCents(new BigDecimal("1E+3"))).isEqualTo(100_000);
+    }
+
+    @Test
+    void toCents_rejects_amounts_beyond_a_long() {
+        BigDecimal tooLarge = BigDecimal.valueOf(Long.MAX_VALUE, 2).add(new BigDecimal("0.01"));
+
+        assertThat(Money.toCents(BigDecimal.valueOf(Long.MAX_VALUE, 2))).isEqualTo(Long.MAX_VALUE);
+        assertThatThrownBy(() -> Money.toCents(tooLarge)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void arithmetic_is_exact_in_cents() {
+        Money a = Money.of(new BigDecimal("10.10"));
+        Money b = Money.of(new BigDecimal("0.20"));
+
+        assertThat(a.plus(b)).isEqualTo(Money.ofCents(1030));
+        assertThat(a.minus(b)).isEqualTo(Money.ofCents(990));
+        assertThat(b.minus(a).signum()).isNegative();
+        assertThat(a.negate().plus(a)).isSameAs(Money.ZERO);
+        assertThat(a.toString()).isEqualTo("10.10");
+    }
+
+    @Test
+    void arithmetic_throws_instead_of_wrapping_on_overflow() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+        Money min = Money.ofCents(Long.MIN_VALUE);
+
+        assertThatThrownBy(() -> max.plus(1)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> max.plus(Money.ofCents(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> min.minus(Money.ofCents(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(min::negate).isInstanceOf(ArithmeticException.class);
+    }
+}
@@ -0,0 +1,35 @@
+package org.lei.bill_buddy.repository;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+/**
+ * One embedded MariaDB per test JVM, so repository tests run native SQL against the schema the
+ * Flyway migrations actually produce.
+ */
+final class EmbeddedMariaDb {
+    private static final String DATABASE = "bill_buddy";
+    private static DB db;
+
+    private EmbeddedMariaDb() {
+    }
+
+    static synchronized void register(DynamicPropertyRegistry registry) throws ManagedProcessException {
+        if (db == null) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0);
+            // mariadbd refuses to start as root unless told to, which CI containers often are.
+            if ("root".equals(System.getProperty("user.name"))) config.addArg("--user=root");
+            db = DB.newEmbeddedDB(config.build());
+            db.start();
+        }
+        String url = "jdbc:mysql://localhost:" + db.getConfiguration().getPort() + "/" + DATABASE
+                + "?createDatabaseIfNotExist=true&useSSL=false&allowPublicKeyRetrieval=true";
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.flyway.locations", () -> "classpath:db/migration");
+    }
+}
@@ -0,0 +1,94 @@
+package org.lei.bill_buddy.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.enums.GroupType;
+import org.lei.bill_buddy.model.Group;
+import org.lei.bill_buddy.model.GroupDebt;
+import org.lei.bill_buddy.model.Money;
+import org.lei.bill_buddy.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the native unsettled-pair statements against the schema built by the Flyway migrations.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class GroupRepositoryTest {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws Exception {
+        EmbeddedMariaDb.register(registry);
+    }
+
+    @Autowired
+    TestEntityManager entityManager;
+    @Autowired
+    GroupRepository groupRepository;
+    @Autowired
+    GroupDebtRepository groupDebtRepository;
+
+    Group group;
+    User a;
+    User b;
+    User c;
+
+    @BeforeEach
+    void setUp() {
+        a = user("a");
+        b = user("b");
+        c = user("c");
+        group = new Group();
+        group.setName("Trip");
+        group.setType(GroupType.TRIP);
+        group.setCreator(a);
+        entityManager.persist(group);
+
+        debt(a, b, 1_250);
+        debt(a, c, -300);
+        debt(b, c, 0);
+        entityManager.flush();
+        groupRepository.adjustUnsettledPairs(group.getId(), 2);
+    }
+
+    @Test
+    void recount_ignores_settled_and_soft_deleted_pairs() {
+        groupDebtRepository.softDeleteByGroupIdAndUserIdAndDeletedFalse(group.getId(), c.getId());
+        groupRepository.recountUnsettledPairs(group.getId());
+
+        assertThat(groupRepository.findUnsettledPairsById(group.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void recount_after_deleting_every_pair_is_zero() {
+        groupDebtRepository.softDeleteByGroupIdAndDeletedFalse(group.getId());
+        groupRepository.recountUnsettledPairs(group.getId());
+
+        assertThat(groupRepository.findUnsettledPairsById(group.getId())).isZero();
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setEmail(name + "@billbuddy.test");
+        user.setPassword("hash");
+        user.setGivenName(name);
+        user.setFamilyName("Test");
+        return entityManager.persist(user);
+    }
+
+    private void debt(User min, User max, long cents) {
+        GroupDebt debt = new GroupDebt();
+        debt.setGroup(group);
+        debt.setMinUser(min);
+        debt.setMaxUser(max);
+        debt.setSignedAmount(Money.ofCents(cents));
+        entityManager.persist(debt);
+    }
+}
@@ -0,0 +1,88 @@
+package org.lei.bill_buddy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.model.Activity;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActivityLogWriterTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    List<Long> written = new ArrayList<>();
+    ActivityLogWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Rows for object 13 violate a constraint; any batch containing one fails as a whole.
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(i -> {
+                    Collection<Activity> batch = i.getArgument(1);
+                    if (batch.stream().anyMatch(a -> a.getObjectId() == 13L)) {
+                        throw new DataIntegrityViolationException("bad row");
+                    }
+                    batch.forEach(a -> written.add(a.getObjectId()));
+                    return new int[0][];
+                });
+        writer = new ActivityLogWriter(jdbcTemplate, registry, 100, 10, 3);
+    }
+
+    @Test
+    void failed_batch_falls_back_to_row_by_row_writes() {
+        writer.enqueue(activity(1));
+        writer.enqueue(activity(13));
+        writer.enqueue(activity(2));
+
+        writer.flush();
+
+        assertThat(written).containsExactly(1L, 2L);
+        assertThat(registry.counter("activity.writer.batch.failures").count()).isEqualTo(1);
+        assertThat(registry.counter("activity.writer.dropped").count()).isZero();
+    }
+
+    @Test
+    void failing_row_is_retried_then_dropped_with_a_metric() {
+        writer.enqueue(activity(13));
+
+        writer.flush();
+        writer.flush();
+        assertThat(registry.counter("activity.writer.dropped").count()).isZero();
+
+        writer.flush();
+        assertThat(registry.counter("activity.writer.dropped").count()).isEqualTo(1);
+        assertThat(registry.get("activity.writer.retry.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void shutdown_spends_remaining_attempts_before_giving_up() {
+        writer.enqueue(activity(13));
+        writer.enqueue(activity(3));
+
+        writer.shutdown();
+
+        assertThat(written).containsExactly(3L);
+        assertThat(registry.counter("activity.writer.dropped").count()).isEqualTo(1);
+    }
+
+    private static Activity activity(long objectId) {
+        Activity activity = new Activity();
+        activity.setUserId(1L);
+        activity.setObjectId(objectId);
+        return activity;
+    }
+}
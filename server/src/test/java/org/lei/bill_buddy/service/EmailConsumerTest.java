@@ -0,0 +1,171 @@
+package org.lei.bill_buddy.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.lei.bill_buddy.DTO.EmailDTO;
+import org.lei.bill_buddy.config.util.RabbitMQConfig;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailConsumerTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+    RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    Map<String, String> redisKeys = new ConcurrentHashMap<>();
+    StringRedisTemplate redis;
+    EmailConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(i -> redisKeys.putIfAbsent(i.getArgument(0), i.getArgument(1)) == null);
+        when(ops.get(anyString())).thenAnswer(i -> redisKeys.get(i.<String>getArgument(0)));
+        doAnswer(i -> redisKeys.put(i.getArgument(0), i.getArgument(1)))
+                .when(ops).set(anyString(), anyString(), any(Duration.class));
+        when(redis.delete(anyString())).thenAnswer(i -> redisKeys.remove(i.<String>getArgument(0)) != null);
+        consumer = consumerSendingTo(greenMail.getSmtp().getPort());
+    }
+
+    @Test
+    void handleMessages_delivers_a_whole_batch() throws Exception {
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            batch.add(message(invite("member" + i + "@billbuddy.test")));
+        }
+
+        consumer.handleMessages(batch);
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(30);
+        assertThat(received[0].getSubject()).isEqualTo("You have been invited to join the group: Trip");
+        assertThat(GreenMailUtil.getBody(received[0])).contains("https://billbuddy.test/invite/abc");
+    }
+
+    @Test
+    void handleMessages_skips_bad_tasks_without_dropping_the_rest() throws Exception {
+        EmailDTO verify = new EmailDTO();
+        verify.setType("verify");
+        verify.setToEmail("alice@billbuddy.test");
+        verify.setGivenName("Alice");
+        verify.setCode("123456");
+        EmailDTO unknown = new EmailDTO();
+        unknown.setType("newsletter");
+        unknown.setToEmail("bob@billbuddy.test");
+        EmailDTO incomplete = new EmailDTO();
+        incomplete.setType("invite");
+        incomplete.setToEmail("carol@billbuddy.test");
+
+        consumer.handleMessages(List.of(message(unknown), message(incomplete), message(verify)));
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(1);
+        String body = GreenMailUtil.getBody(received[0]);
+        assertThat(body).contains("123456").contains("5 minutes").doesNotContain("{{");
+        verify(rabbitTemplate, times(2)).send(eq(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME),
+                eq(RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME), any(Message.class));
+    }
+
+    @Test
+    void handleMessages_does_not_resend_a_redelivered_task() {
+        Message message = message(invite("dave@billbuddy.test"));
+
+        consumer.handleMessages(List.of(message));
+        consumer.handleMessages(List.of(message));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(redisKeys).containsValue("sent");
+    }
+
+    @Test
+    void handleMessages_defers_a_task_claimed_by_a_consumer_that_died_mid_send() {
+        Message message = message(invite("gina@billbuddy.test"));
+        redisKeys.put("email_sent:" + message.getMessageProperties().getMessageId(), "in-flight");
+
+        consumer.handleMessages(List.of(message));
+
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+        verify(rabbitTemplate).send(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME, "email.retry.1", message);
+        assertThat(message.getMessageProperties().<Integer>getHeader(RabbitMQConfig.EMAIL_ATTEMPT_HEADER)).isNull();
+
+        // The stale claim lapses; the deferred task comes back and is sent.
+        redisKeys.clear();
+        consumer.handleMessages(List.of(message));
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+    }
+
+    @Test
+    void handleMessages_backs_off_through_retry_queues_then_parks() {
+        EmailConsumer unreachable = consumerSendingTo(1);
+        Message message = message(invite("erin@billbuddy.test"));
+        ArgumentCaptor<String> routingKeys = ArgumentCaptor.forClass(String.class);
+
+        for (int i = 0; i < 4; i++) {
+            unreachable.handleMessages(List.of(message));
+        }
+
+        verify(rabbitTemplate, times(4))
+                .send(eq(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME), routingKeys.capture(), eq(message));
+        assertThat(routingKeys.getAllValues()).containsExactly(
+                "email.retry.1", "email.retry.2", "email.retry.3", RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME);
+        assertThat(redisKeys).isEmpty();
+    }
+
+    private EmailConsumer consumerSendingTo(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        return new EmailConsumer(mailSender, rabbitTemplate, converter, redis, new SimpleMeterRegistry(),
+                "noreply@billbuddy.test", 5 * 60 * 1000, List.of(10_000L, 60_000L, 300_000L), 86_400, 60);
+    }
+
+    private Message message(EmailDTO email) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(UUID.randomUUID().toString());
+        return converter.toMessage(email, properties);
+    }
+
+    private static EmailDTO invite(String to) {
+        EmailDTO email = new EmailDTO();
+        email.setType("invite");
+        email.setToEmail(to);
+        email.setGroupName("Trip");
+        email.setInviteLink("https://billbuddy.test/invite/abc");
+        return email;
+    }
+}
@@ -0,0 +1,90 @@
+package org.lei.bill_buddy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.DTO.EmailDTO;
+import org.lei.bill_buddy.config.util.RabbitMQConfig;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailProducerTest {
+
+    record Publish(String exchange, String routingKey, Message message, CorrelationData correlation) {
+    }
+
+    RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    List<Publish> publishes = new CopyOnWriteArrayList<>();
+    EmailProducer producer;
+
+    @BeforeEach
+    void setUp() {
+        when(rabbitTemplate.getMessageConverter()).thenReturn(new Jackson2JsonMessageConverter());
+        doAnswer(i -> publishes.add(new Publish(i.getArgument(0), i.getArgument(1), i.getArgument(2), i.getArgument(3))))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        producer = new EmailProducer(rabbitTemplate, new SimpleMeterRegistry(), 2, 1);
+    }
+
+    @Test
+    void nacked_publish_is_retried_then_parked() {
+        producer.sendEmail(email());
+
+        nack(0);
+        await().until(() -> publishes.size() == 2);
+        nack(1);
+        await().until(() -> publishes.size() == 3);
+
+        Publish parked = publishes.get(2);
+        assertThat(parked.exchange()).isEqualTo(RabbitMQConfig.EMAIL_RETRY_EXCHANGE_NAME);
+        assertThat(parked.routingKey()).isEqualTo(RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME);
+        assertThat(parked.message().getMessageProperties().getMessageId())
+                .isEqualTo(publishes.get(0).message().getMessageProperties().getMessageId());
+    }
+
+    @Test
+    void unroutable_publish_goes_straight_to_the_parking_lot() {
+        producer.sendEmail(email());
+
+        Publish first = publishes.get(0);
+        first.correlation().setReturned(new ReturnedMessage(first.message(), 312, "NO_ROUTE",
+                first.exchange(), first.routingKey()));
+        first.correlation().getFuture().complete(new CorrelationData.Confirm(true, null));
+
+        await().until(() -> publishes.size() == 2);
+        assertThat(publishes.get(1).routingKey()).isEqualTo(RabbitMQConfig.EMAIL_PARKING_LOT_QUEUE_NAME);
+    }
+
+    @Test
+    void confirmed_publish_is_sent_once() throws InterruptedException {
+        producer.sendEmail(email());
+        publishes.get(0).correlation().getFuture().complete(new CorrelationData.Confirm(true, null));
+
+        Thread.sleep(50);
+        assertThat(publishes).hasSize(1);
+    }
+
+    private void nack(int index) {
+        publishes.get(index).correlation().getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+    }
+
+    private static EmailDTO email() {
+        EmailDTO email = new EmailDTO();
+        email.setType("invite");
+        email.setToEmail("frank@billbuddy.test");
+        return email;
+    }
+}
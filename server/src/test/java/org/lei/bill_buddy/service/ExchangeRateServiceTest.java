@@ -0,0 +1,79 @@
+package org.lei.bill_buddy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.model.FxRateSnapshot;
+import org.lei.bill_buddy.repository.FxRateSnapshotRepository;
+import org.lei.bill_buddy.util.ExchangeRateFetcher;
+import org.lei.bill_buddy.util.FxRateTable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExchangeRateServiceTest {
+
+    FxRateSnapshotRepository repository = mock(FxRateSnapshotRepository.class);
+    ExchangeRateService service = new ExchangeRateService(mock(StringRedisTemplate.class), mock(ExchangeRateFetcher.class), repository);
+    LocalDate lastWeek = LocalDate.now().minusDays(7);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "historyCacheDays", 10L);
+        service.init();
+        service.publish(table("0.90"));
+    }
+
+    @Test
+    void day_without_a_snapshot_is_not_cached() {
+        when(repository.findTopByRateDateLessThanEqualOrderByRateDateDesc(lastWeek))
+                .thenReturn(Optional.empty(), Optional.of(snapshot("USD:1,EUR:0.80")));
+
+        BigDecimal live = service.convertAt(new BigDecimal("100"), Currency.USD, Currency.EUR, lastWeek);
+        BigDecimal recorded = service.convertAt(new BigDecimal("100"), Currency.USD, Currency.EUR, lastWeek);
+        service.convertAt(new BigDecimal("100"), Currency.USD, Currency.EUR, lastWeek);
+
+        assertThat(live).isEqualByComparingTo("90");
+        assertThat(recorded).isEqualByComparingTo("80");
+        verify(repository, times(2)).findTopByRateDateLessThanEqualOrderByRateDateDesc(lastWeek);
+    }
+
+    @Test
+    void daily_snapshot_is_inserted_once_per_day_per_node() {
+        when(repository.insertIfAbsent(any(), anyString(), anyString(), any())).thenReturn(0);
+
+        service.recordDailySnapshot(table("0.90"), Currency.USD);
+        service.recordDailySnapshot(table("0.91"), Currency.USD);
+
+        verify(repository, times(1)).insertIfAbsent(eq(LocalDate.now()), eq("USD"), anyString(), any());
+    }
+
+    private static FxRateTable table(String eurPerUsd) {
+        Map<Currency, BigDecimal> unitsPerBase = new EnumMap<>(Currency.class);
+        for (Currency currency : Currency.values()) unitsPerBase.put(currency, BigDecimal.ONE);
+        unitsPerBase.put(Currency.EUR, new BigDecimal(eurPerUsd));
+        return FxRateTable.fromBaseVector(unitsPerBase);
+    }
+
+    private FxRateSnapshot snapshot(String rates) {
+        FxRateSnapshot snapshot = new FxRateSnapshot();
+        snapshot.setRateDate(lastWeek);
+        snapshot.setBaseCurrency(Currency.USD);
+        snapshot.setRates(rates);
+        return snapshot;
+    }
+}
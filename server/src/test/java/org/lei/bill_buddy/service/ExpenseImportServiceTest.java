@@ -0,0 +1,205 @@
+package org.lei.bill_buddy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.DTO.ExpenseImportResultDTO;
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.Currency;
+import org.lei.bill_buddy.model.Group;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.repository.ExpenseRepository;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpenseImportServiceTest {
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    GroupService groupService = mock(GroupService.class);
+    UserService userService = mock(UserService.class);
+    GroupDebtService groupDebtService = mock(GroupDebtService.class);
+    ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+    ActivityService activityService = mock(ActivityService.class);
+    ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+
+    List<BigDecimal> insertedAmounts = new ArrayList<>();
+    List<Object[]> insertedShares = new ArrayList<>();
+    long nextId = 100;
+
+    Group group;
+    User u10;
+    User u11;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        group = new Group();
+        group.setId(1L);
+        group.setDefaultCurrency(Currency.USD);
+        u10 = user(10L);
+        u11 = user(11L);
+
+        when(groupService.getGroupById(1L)).thenReturn(group);
+        when(groupService.getAllMemberIdsOfGroup(1L)).thenReturn(Set.of(10L, 11L));
+        when(userService.getUsersMapByIds(any())).thenReturn(Map.of(10L, u10, 11L, u11));
+        lenient().when(userService.getCurrentUser()).thenReturn(u10);
+        lenient().when(exchangeRateService.convertAt(any(), any(), any(), any())).thenAnswer(i -> i.getArgument(0));
+
+        // Expense rows go through a raw batch statement; record the amounts and hand back sequential keys.
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(i -> {
+            List<BigDecimal> batch = new ArrayList<>();
+            PreparedStatement ps = mock(PreparedStatement.class);
+            doAnswer(a -> batch.add(a.getArgument(1))).when(ps).setBigDecimal(eq(4), any());
+            ResultSet keys = mock(ResultSet.class);
+            int[] served = {0};
+            when(keys.next()).thenAnswer(a -> served[0]++ < batch.size());
+            when(keys.getLong(1)).thenAnswer(a -> nextId++);
+            when(ps.getGeneratedKeys()).thenReturn(keys);
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString(), anyInt())).thenReturn(ps);
+            Object ids = i.<ConnectionCallback<Object>>getArgument(0).doInConnection(connection);
+            insertedAmounts.addAll(batch);
+            return ids;
+        });
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(i -> {
+            insertedShares.addAll(i.<List<Object[]>>getArgument(1));
+            return new int[0];
+        });
+    }
+
+    @Test
+    void csv_rows_are_parsed_with_quoted_cells_and_lists() throws IOException {
+        String csv = """
+                title,amount,payerId,participants,shares,expenseDate
+                "Dinner, downtown",30.00,10,10;11,,2025-01-02
+                Taxi,12.50,11,10;11,10.00;2.50,2025-01-03T08:30:00
+                """;
+
+        ExpenseImportResultDTO result = service(500, 100).importExpenses(1L, stream(csv), ExpenseImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(insertedAmounts).containsExactly(new BigDecimal("30.00"), new BigDecimal("12.50"));
+        assertThat(insertedShares).extracting(row -> row[2])
+                .containsExactly(new BigDecimal("15.00"), new BigDecimal("15.00"), new BigDecimal("10.00"), new BigDecimal("2.50"));
+    }
+
+    @Test
+    void ndjson_rows_are_netted_into_a_single_debt_write() throws IOException {
+        String ndjson = """
+                {"title":"Groceries","amount":20,"payerId":10,"participants":[10,11],"expenseDate":"2025-01-02"}
+                {"title":"Fuel","amount":6,"payerId":11,"participants":[10,11],"expenseDate":"2025-01-03"}
+                """;
+
+        service(1, 100).importExpenses(1L, stream(ndjson), ExpenseImportService.Format.NDJSON);
+
+        ArgumentCaptor<GroupDebtService.DebtDeltas> deltas = ArgumentCaptor.forClass(GroupDebtService.DebtDeltas.class);
+        verify(groupDebtService, times(1)).applyDebtDeltas(eq(group), deltas.capture());
+        // 11 owes 10 for half the groceries, 10 owes 11 for half the fuel: 10.00 - 3.00.
+        assertThat(deltas.getValue().netCents(10L, 11L)).isEqualTo(700);
+        verify(groupService).groupUpdated(1L);
+        verify(activityService).log(any(), any(), eq(1L), eq("user_imported_expenses_to_group"), anyMap());
+    }
+
+    @Test
+    void errors_carry_the_line_number() {
+        String csv = """
+                title,amount,payerId,participants,expenseDate
+                Dinner,30.00,10,10;11,2025-01-02
+                Taxi,12.50,99,10;11,2025-01-03
+                """;
+
+        assertThatThrownBy(() -> service(500, 100).importExpenses(1L, stream(csv), ExpenseImportService.Format.CSV))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("Line 3: payer is not a member of this group");
+    }
+
+    @Test
+    void shares_must_add_up_to_the_amount() {
+        String csv = """
+                title,amount,payerId,participants,shares,expenseDate
+                Dinner,100.00,10,10;11,10;10,2025-01-02
+                """;
+
+        assertThatThrownBy(() -> service(500, 100).importExpenses(1L, stream(csv), ExpenseImportService.Format.CSV))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("Line 2: shares must add up to the amount");
+    }
+
+    @Test
+    void imports_over_the_row_cap_are_rejected() {
+        String ndjson = """
+                {"title":"A","amount":1,"payerId":10,"participants":[11],"expenseDate":"2025-01-01"}
+                {"title":"B","amount":1,"payerId":10,"participants":[11],"expenseDate":"2025-01-01"}
+                {"title":"C","amount":1,"payerId":10,"participants":[11],"expenseDate":"2025-01-01"}
+                """;
+
+        assertThatThrownBy(() -> service(500, 2).importExpenses(1L, stream(ndjson), ExpenseImportService.Format.NDJSON))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("at most 2");
+    }
+
+    @Test
+    void bad_row_after_a_flushed_batch_aborts_the_transaction() throws NoSuchMethodException {
+        String ndjson = """
+                {"title":"A","amount":1,"payerId":10,"participants":[11],"expenseDate":"2025-01-01"}
+                {"title":"B","amount":-1,"payerId":10,"participants":[11],"expenseDate":"2025-01-01"}
+                """;
+
+        assertThatThrownBy(() -> service(1, 100).importExpenses(1L, stream(ndjson), ExpenseImportService.Format.NDJSON))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("Line 2");
+
+        // The first row was already written, so the unchecked exception must roll the whole import back.
+        assertThat(insertedAmounts).hasSize(1);
+        assertThat(ExpenseImportService.class.getMethod("importExpenses", Long.class, InputStream.class,
+                ExpenseImportService.Format.class).isAnnotationPresent(Transactional.class)).isTrue();
+        verify(groupDebtService, never()).applyDebtDeltas(any(), any());
+        verify(activityService, never()).log(any(), any(), any(), any(), anyMap());
+    }
+
+    private ExpenseImportService service(int batchSize, int maxRows) {
+        return new ExpenseImportService(jdbcTemplate, new ObjectMapper(), groupService, userService, groupDebtService,
+                exchangeRateService, activityService, expenseRepository, batchSize, maxRows);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
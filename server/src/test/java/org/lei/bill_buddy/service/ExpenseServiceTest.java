@@ -12,6 +12,7 @@ import org.lei.bill_buddy.model.*;
 import org.lei.bill_buddy.repository.ExpenseRepository;
 import org.lei.bill_buddy.repository.ExpenseShareRepository;
 import org.lei.bill_buddy.repository.RecurringExpenseRepository;
+import org.lei.bill_buddy.util.EntityGenerations;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -45,6 +46,8 @@ class ExpenseServiceTest {
     ExchangeRateService exchangeRateService;
     @Mock
     ActivityService activityService;
+    @Mock
+    EntityGenerations entityGenerations;
 
     @InjectMocks
     ExpenseService expenseService;
@@ -70,6 +73,7 @@ class ExpenseServiceTest {
         lenient().when(userService.getUserById(10L)).thenReturn(payer);
         lenient().when(userService.getUserById(11L)).thenReturn(u2);
         lenient().when(exchangeRateService.convert(any(), any(), any())).thenAnswer(i -> i.getArgument(0));
+        lenient().when(exchangeRateService.convertAt(any(), any(), any(), any())).thenAnswer(i -> i.getArgument(0));
         lenient().when(userService.getCurrentUser()).thenReturn(payer);
         lenient().when(userService.getUsersByIds(anyList())).thenReturn(List.of(payer, u2));
     }
@@ -94,7 +98,41 @@ class ExpenseServiceTest {
         );
 
         assertThat(res.getId()).isEqualTo(100L);
-        verify(groupDebtService).updateGroupDebt(eq(payer), eq(u2), eq(g), any());
+        verify(groupDebtService).applyDebtDeltas(eq(g), any(GroupDebtService.DebtDeltas.class));
+        verify(expenseRepository, never()).settleExpensesByGroupId(anyLong());
+    }
+
+    @Test
+    void createExpense_with_shares_that_do_not_add_up_in_cents_throws() {
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(i -> i.getArgument(0));
+
+        assertThatThrownBy(() -> expenseService.createExpense(
+                1L, 10L, "Dinner", "OTHER",
+                new BigDecimal("20.01"), "USD", "",
+                LocalDateTime.now(),
+                false, null, null,
+                List.of(10L, 11L), List.of(new BigDecimal("10.005"), new BigDecimal("10.005"))
+        )).isInstanceOf(AppException.class)
+                .hasMessageContaining("add up");
+
+        verify(expenseShareRepository, never()).saveAll(anyList());
+        verify(groupDebtService, never()).applyDebtDeltas(any(), any());
+    }
+
+    @Test
+    void deleteExpense_that_settles_the_group_marks_its_expenses_settled() {
+        Expense e = new Expense();
+        e.setId(201L);
+        e.setPayer(payer);
+        e.setGroup(g);
+        when(expenseRepository.findById(201L)).thenReturn(Optional.of(e));
+        when(expenseShareRepository.findByExpenseIdAndDeletedFalse(201L))
+                .thenReturn(List.of(share(e, u2, new BigDecimal("5"))));
+        when(groupDebtService.applyDebtDeltas(eq(g), any(GroupDebtService.DebtDeltas.class))).thenReturn(true);
+
+        expenseService.deleteExpense(201L);
+
+        verify(expenseRepository).settleExpensesByGroupId(1L);
     }
 
     @Test
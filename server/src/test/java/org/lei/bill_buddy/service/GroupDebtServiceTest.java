@@ -0,0 +1,86 @@
+package org.lei.bill_buddy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.model.Group;
+import org.lei.bill_buddy.model.GroupDebt;
+import org.lei.bill_buddy.model.Money;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.repository.GroupDebtRepository;
+import org.lei.bill_buddy.repository.GroupRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GroupDebtServiceTest {
+
+    GroupDebtRepository groupDebtRepository = mock(GroupDebtRepository.class);
+    GroupRepository groupRepository = mock(GroupRepository.class);
+    GroupDebtService service = new GroupDebtService(groupDebtRepository, groupRepository);
+
+    Group group;
+    User a;
+    User b;
+    GroupDebt pair;
+
+    @BeforeEach
+    void setUp() {
+        group = new Group();
+        group.setId(1L);
+        a = user(10L);
+        b = user(11L);
+        pair = new GroupDebt();
+        pair.setGroup(group);
+        pair.setMinUser(a);
+        pair.setMaxUser(b);
+        when(groupDebtRepository.findByGroupIdAndMinUserIdInAndMaxUserIdInAndDeletedFalse(eq(1L), any(), any()))
+                .thenReturn(List.of(pair));
+    }
+
+    @Test
+    void settling_the_last_open_pair_reports_the_transition() {
+        pair.setSignedAmount(Money.ofCents(500));
+        when(groupRepository.findUnsettledPairsById(1L)).thenReturn(0);
+
+        assertThat(service.applyDebtDeltas(group, deltas(-500))).isTrue();
+        verify(groupRepository).adjustUnsettledPairs(1L, -1);
+    }
+
+    @Test
+    void settling_one_of_several_open_pairs_does_not() {
+        pair.setSignedAmount(Money.ofCents(500));
+        when(groupRepository.findUnsettledPairsById(1L)).thenReturn(2);
+
+        assertThat(service.applyDebtDeltas(group, deltas(-500))).isFalse();
+    }
+
+    @Test
+    void writes_that_leave_the_count_unchanged_skip_the_count_lookup() {
+        pair.setSignedAmount(Money.ofCents(500));
+
+        assertThat(service.applyDebtDeltas(group, deltas(200))).isFalse();
+        verify(groupRepository, never()).adjustUnsettledPairs(anyLong(), anyInt());
+        verify(groupRepository, never()).findUnsettledPairsById(anyLong());
+    }
+
+    private GroupDebtService.DebtDeltas deltas(long cents) {
+        GroupDebtService.DebtDeltas deltas = new GroupDebtService.DebtDeltas();
+        deltas.add(a, b, cents);
+        return deltas;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -3,12 +3,15 @@ package org.lei.bill_buddy.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.lei.bill_buddy.DTO.GroupMemberIdsDTO;
+import org.lei.bill_buddy.DTO.GroupSnapshotDTO;
 import org.lei.bill_buddy.enums.GroupType;
 import org.lei.bill_buddy.model.Group;
 import org.lei.bill_buddy.model.GroupMember;
 import org.lei.bill_buddy.model.User;
 import org.lei.bill_buddy.repository.GroupMemberRepository;
 import org.lei.bill_buddy.repository.GroupRepository;
+import org.lei.bill_buddy.util.TwoLevelCache;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -20,6 +23,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -36,6 +40,10 @@ class GroupServiceTest {
     ActivityService activityService;
     @Mock
     UserService userService;
+    @Mock
+    TwoLevelCache<GroupSnapshotDTO> groupCache;
+    @Mock
+    TwoLevelCache<GroupMemberIdsDTO> groupMembersCache;
 
     @InjectMocks
     GroupService groupService;
@@ -50,6 +58,8 @@ class GroupServiceTest {
         creator.setFamilyName("F");
 
         lenient().when(userService.getCurrentUser()).thenReturn(creator);
+        lenient().when(groupCache.get(anyString(), any())).thenAnswer(i -> i.<Supplier<?>>getArgument(1).get());
+        lenient().when(groupMembersCache.get(anyString(), any())).thenAnswer(i -> i.<Supplier<?>>getArgument(1).get());
     }
 
 
@@ -85,8 +95,8 @@ class GroupServiceTest {
 
     @Test
     void isMemberOfGroup_true() {
-        when(groupMemberRepository.existsByUserIdAndGroupIdAndDeletedFalse(1L, 5L))
-                .thenReturn(true);
+        when(groupMemberRepository.findUserIdsByGroupIdAndDeletedFalse(5L))
+                .thenReturn(List.of(1L, 2L));
         assertThat(groupService.isMemberOfGroup(1L, 5L)).isTrue();
     }
 
@@ -0,0 +1,82 @@
+package org.lei.bill_buddy.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.lei.bill_buddy.model.GroupDebt;
+import org.lei.bill_buddy.model.Money;
+import org.lei.bill_buddy.model.User;
+import org.lei.bill_buddy.repository.GroupDebtRepository;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SettlementPlanServiceTest {
+
+    @Mock
+    GroupDebtRepository groupDebtRepository;
+
+    @InjectMocks
+    SettlementPlanService settlementPlanService;
+
+    @Test
+    void planForGroup_collapses_chain_into_one_transfer() {
+        // 3 owes 2 10.00, 2 owes 1 10.00 -> 3 pays 1 directly
+        when(groupDebtRepository.findByGroupIdAndDeletedFalse(1L)).thenReturn(List.of(
+                row(1L, 2L, "10.00"),
+                row(2L, 3L, "10.00"),
+                row(1L, 3L, "0.00")));
+
+        List<SettlementPlanService.Transfer> plan = settlementPlanService.planForGroup(1L);
+
+        assertThat(plan).containsExactly(new SettlementPlanService.Transfer(3L, 1L, 1000L));
+        assertThat(plan.get(0).amount()).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void plan_clears_every_balance() {
+        Random random = new Random(42);
+        int n = 500;
+        long[] ids = new long[n];
+        long[] balances = new long[n];
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+            balances[i] = i == n - 1 ? -sum : random.nextInt(200_001) - 100_000;
+            sum += balances[i];
+        }
+
+        List<SettlementPlanService.Transfer> plan = SettlementPlanService.plan(ids, balances);
+
+        Map<Long, Long> net = new HashMap<>();
+        for (int i = 0; i < n; i++) net.put(ids[i], balances[i]);
+        for (SettlementPlanService.Transfer t : plan) {
+            assertThat(t.amountCents()).isPositive();
+            net.merge(t.fromUserId(), t.amountCents(), Long::sum);
+            net.merge(t.toUserId(), -t.amountCents(), Long::sum);
+        }
+        assertThat(net.values()).allMatch(v -> v == 0L);
+        assertThat(plan.size()).isLessThan(n);
+    }
+
+    private GroupDebt row(Long minUserId, Long maxUserId, String signedAmount) {
+        User min = new User();
+        min.setId(minUserId);
+        User max = new User();
+        max.setId(maxUserId);
+        GroupDebt gd = new GroupDebt();
+        gd.setMinUser(min);
+        gd.setMaxUser(max);
+        gd.setSignedAmount(Money.of(new BigDecimal(signedAmount)));
+        return gd;
+    }
+}
@@ -0,0 +1,54 @@
+package org.lei.bill_buddy.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class EntityGenerationsTest {
+
+    StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    EntityGenerations generations = new EntityGenerations(redis, 100);
+
+    @Test
+    void stamp_goes_stale_only_when_a_referenced_entity_changes() {
+        List<String> refs = List.of(EntityGenerations.key(EntityGenerations.USER, 1L),
+                EntityGenerations.key(EntityGenerations.GROUP, 2L));
+        long stamp = generations.now();
+
+        generations.onInvalidation(EntityGenerations.USER, "9");
+        generations.onInvalidation("group-members", "2");
+        assertThat(generations.unchangedSince(stamp, refs)).isTrue();
+
+        generations.onInvalidation(EntityGenerations.GROUP, "2");
+        assertThat(generations.unchangedSince(stamp, refs)).isFalse();
+        assertThat(generations.unchangedSince(generations.now(), refs)).isTrue();
+    }
+
+    @Test
+    void invalidate_is_applied_locally_and_broadcast() {
+        List<String> refs = List.of(EntityGenerations.key(EntityGenerations.EXPENSE, 5L));
+        long stamp = generations.now();
+
+        generations.invalidate(EntityGenerations.EXPENSE, 5L);
+
+        assertThat(generations.unchangedSince(stamp, refs)).isFalse();
+        verify(redis).convertAndSend(TwoLevelCache.INVALIDATION_CHANNEL, "expense:5");
+    }
+
+    @Test
+    void bulk_invalidation_makes_every_older_stamp_stale() {
+        List<String> refs = List.of(EntityGenerations.key(EntityGenerations.EXPENSE, 5L));
+        long stamp = generations.now();
+
+        generations.invalidateAll(EntityGenerations.EXPENSE);
+
+        assertThat(generations.unchangedSince(stamp, refs)).isFalse();
+        assertThat(generations.unchangedSince(stamp, List.of())).isFalse();
+        assertThat(generations.unchangedSince(generations.now(), refs)).isTrue();
+    }
+}
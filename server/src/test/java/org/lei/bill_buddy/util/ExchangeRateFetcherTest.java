@@ -0,0 +1,106 @@
+package org.lei.bill_buddy.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.config.exception.AppException;
+import org.lei.bill_buddy.enums.Currency;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExchangeRateFetcherTest {
+
+    private static final String LATEST_USD = """
+            {"result":"success","base_code":"USD","conversion_rates":{
+            "USD":1,"EUR":0.8,"GBP":0.5,"JPY":150,"CNY":7.2,"KRW":1350,"AUD":1.5,"CAD":1.25,"CHF":0.9}}
+            """;
+
+    HttpServer server;
+    AtomicInteger requests = new AtomicInteger();
+    AtomicInteger pairRequests = new AtomicInteger();
+    AtomicBoolean pairDown = new AtomicBoolean();
+    ExchangeRateFetcher fetcher;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/latest/USD", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = LATEST_USD.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/latest/EUR", exchange -> {
+            byte[] body = "{\"result\":\"error\",\"error-type\":\"quota-reached\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/pair/USD/EUR", exchange -> {
+            pairRequests.incrementAndGet();
+            if (pairDown.get()) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "{\"result\":\"success\",\"conversion_rate\":0.8}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        fetcher = new ExchangeRateFetcher("http://localhost:" + server.getAddress().getPort(), 500, 1000, 2, 60);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchLatest_derives_all_cross_rates_from_one_call() {
+        Map<Currency, BigDecimal> vector = fetcher.fetchLatest(Currency.USD);
+        FxRateTable table = FxRateTable.fromBaseVector(vector);
+
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(table.isComplete()).isTrue();
+        assertThat(table.rate(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.8");
+        assertThat(table.rate(Currency.EUR, Currency.USD)).isEqualByComparingTo("1.25");
+        assertThat(table.rate(Currency.EUR, Currency.GBP)).isEqualByComparingTo("0.625");
+        assertThat(table.rate(Currency.CAD, Currency.JPY)).isEqualByComparingTo("120");
+    }
+
+    @Test
+    void fetchLatest_rejects_error_payload() {
+        assertThatThrownBy(() -> fetcher.fetchLatest(Currency.EUR)).isInstanceOf(AppException.class);
+    }
+
+    @Test
+    void fetch_serves_last_known_rate_and_opens_circuit_while_provider_is_down() {
+        assertThat(fetcher.fetch(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.8");
+
+        pairDown.set(true);
+        assertThat(fetcher.fetch(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.8");
+        assertThat(fetcher.fetch(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.8");
+        assertThat(pairRequests.get()).isEqualTo(3);
+
+        // Two consecutive failures opened the circuit: no further calls reach the provider.
+        assertThat(fetcher.fetch(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.8");
+        assertThat(pairRequests.get()).isEqualTo(3);
+    }
+}
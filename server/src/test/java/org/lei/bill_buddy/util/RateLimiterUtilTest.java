@@ -0,0 +1,93 @@
+package org.lei.bill_buddy.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the keys and the call pattern against mocked Redis: each check must be one command, so its
+ * atomicity is Redis's own. The Lua counter itself is not executed here.
+ */
+class RateLimiterUtilTest {
+
+    StringRedisTemplate redis;
+    ValueOperations<String, String> ops;
+    RateLimiterUtil limiter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        limiter = new RateLimiterUtil(redis);
+    }
+
+    @Test
+    void single_send_mode_is_one_set_if_absent_on_the_namespaced_key() {
+        when(ops.setIfAbsent("throttle:invite_email:10.0.0.1", "1", Duration.ofSeconds(60))).thenReturn(true, false);
+
+        assertThat(limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 60)).isTrue();
+        assertThat(limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 60)).isFalse();
+
+        verify(redis, never()).hasKey(anyString());
+        verify(ops, never()).get(any());
+        verify(ops, never()).increment(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void counting_mode_is_one_script_call_with_window_and_limit() {
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L, 0L);
+
+        assertThat(limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 5, 60)).isTrue();
+        assertThat(limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 5, 60)).isFalse();
+
+        ArgumentCaptor<RedisScript<Long>> script = ArgumentCaptor.forClass(RedisScript.class);
+        verify(redis, times(2)).execute(script.capture(),
+                eq(List.of("throttle:invite_email:10.0.0.1")), eq("60"), eq("5"));
+        assertThat(script.getValue().getScriptAsString()).contains("INCR", "EXPIRE");
+        verify(redis, never()).opsForValue();
+        verifyNoMoreInteractions(redis);
+    }
+
+    @Test
+    void a_limit_of_one_uses_single_send_mode() {
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThat(limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 1, 60)).isTrue();
+
+        verify(ops).setIfAbsent("throttle:invite_email:10.0.0.1", "1", Duration.ofSeconds(60));
+    }
+
+    @Test
+    void actions_and_subjects_get_separate_keys() {
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.1", 60);
+        limiter.isAllowed(RateLimiterUtil.INVITE_EMAIL, "10.0.0.2", 60);
+        limiter.isAllowed("verification_email", "10.0.0.1", 60);
+
+        verify(ops).setIfAbsent(eq("throttle:invite_email:10.0.0.1"), anyString(), any(Duration.class));
+        verify(ops).setIfAbsent(eq("throttle:invite_email:10.0.0.2"), anyString(), any(Duration.class));
+        verify(ops).setIfAbsent(eq("throttle:verification_email:10.0.0.1"), anyString(), any(Duration.class));
+    }
+}
@@ -0,0 +1,76 @@
+package org.lei.bill_buddy.util;
+
+import org.junit.jupiter.api.Test;
+import org.lei.bill_buddy.config.exception.AppException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SplitAllocatorTest {
+
+    @Test
+    void equal_hands_leftover_cents_to_the_first_participants() {
+        long[] out = new long[3];
+        SplitAllocator.equal(1000, out);
+        assertThat(out).containsExactly(334, 333, 333);
+
+        SplitAllocator.equal(-1000, out);
+        assertThat(out).containsExactly(-334, -333, -333);
+    }
+
+    @Test
+    void weighted_gives_leftover_to_largest_remainders() {
+        // 100 * {1, 2, 3} / 6 = 16.67, 33.33, 50.00 -> the 0.67 remainder takes the cent
+        long[] out = new long[3];
+        SplitAllocator.weighted(100, new long[]{1, 2, 3}, out);
+        assertThat(out).containsExactly(17, 33, 50);
+    }
+
+    @Test
+    void weighted_throws_instead_of_wrapping_when_total_times_weight_overflows() {
+        long[] out = new long[2];
+        assertThatThrownBy(() -> SplitAllocator.weighted(Long.MAX_VALUE / 2, new long[]{3, 1}, out))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void percentage_requires_one_hundred_percent() {
+        long[] out = new long[3];
+        SplitAllocator.percentage(1000, new long[]{3333, 3333, 3334}, out);
+        assertThat(out).containsExactly(333, 333, 334);
+
+        assertThatThrownBy(() -> SplitAllocator.percentage(1000, new long[]{5000, 4000, 0}, out))
+                .isInstanceOf(AppException.class);
+    }
+
+    @Test
+    void exact_rejects_amounts_that_miss_the_total() {
+        long[] out = new long[2];
+        SplitAllocator.exact(1000, new long[]{400, 600}, out);
+        assertThat(out).containsExactly(400, 600);
+
+        assertThatThrownBy(() -> SplitAllocator.exact(1000, new long[]{400, 599}, out))
+                .isInstanceOf(AppException.class);
+    }
+
+    @Test
+    void shares_always_sum_to_total() {
+        Random random = new Random(42);
+        for (int run = 0; run < 10_000; run++) {
+            int n = 1 + random.nextInt(50);
+            long total = random.nextInt(10_000_000) - 1_000_000;
+            long[] weights = new long[n];
+            for (int i = 0; i < n; i++) weights[i] = 1 + random.nextInt(1000);
+            long[] out = new long[n];
+
+            SplitAllocator.weighted(total, weights, out);
+            assertThat(Arrays.stream(out).sum()).isEqualTo(total);
+
+            SplitAllocator.equal(total, out);
+            assertThat(Arrays.stream(out).sum()).isEqualTo(total);
+        }
+    }
+}